@@ -1,32 +1,149 @@
 package de.swatchy2dot0.base;
 
-import org.apache.commons.io.FileUtils;
+import de.swatchy2dot0.metrics.MetricsRegistry;
+import de.swatchy2dot0.metrics.PagePerformance;
+import de.swatchy2dot0.metrics.PagePerformanceLog;
 import org.apache.commons.lang3.StringUtils;
 import org.openqa.selenium.*;
 import org.openqa.selenium.interactions.Actions;
 import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.security.SecureRandom;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class AbstractCrawler {
 
+    private final static Logger logger = LoggerFactory.getLogger(AbstractCrawler.class);
+
+    private static final Pattern URL_PATTERN = Pattern.compile(
+            "((https?|ftp|gopher|telnet|file):((//)|(\\\\))+[\\w\\d:#@%/;$()~_?\\+-=\\\\\\.&]*)",
+            Pattern.CASE_INSENSITIVE);
+
+    /**
+     * poll interval of {@link #findEitherWebElement(int, By...)}, which checks all locators in one script call per poll;
+     * the other waits keep the WebDriverWait default of 500 ms
+     */
+    private static final long ANY_OF_POLL_MILLIS = 50L;
+
+    /**
+     * returns the first element matched by the locators in arguments[0], each a pair of kind and value, or null
+     */
+    private static final String FIND_ANY_SCRIPT =
+            "var locators = arguments[0];"
+                    + "for (var i = 0; i < locators.length; i++) {"
+                    + "  var kind = locators[i][0], value = locators[i][1], found = null;"
+                    + "  if (kind === 'id') { found = document.getElementById(value); }"
+                    + "  else if (kind === 'name') { found = document.getElementsByName(value)[0]; }"
+                    + "  else if (kind === 'className') { found = document.getElementsByClassName(value)[0]; }"
+                    + "  else if (kind === 'tagName') { found = document.getElementsByTagName(value)[0]; }"
+                    + "  else if (kind === 'cssSelector') { found = document.querySelector(value); }"
+                    + "  else if (kind === 'xpath') {"
+                    + "    found = document.evaluate(value, document, null, XPathResult.FIRST_ORDERED_NODE_TYPE, null).singleNodeValue;"
+                    + "  } else {"
+                    + "    var links = document.getElementsByTagName('a');"
+                    + "    for (var j = 0; j < links.length && !found; j++) {"
+                    + "      var text = (links[j].innerText || '').trim();"
+                    + "      if (kind === 'linkText' ? text === value : text.indexOf(value) >= 0) { found = links[j]; }"
+                    + "    }"
+                    + "  }"
+                    + "  if (found) { return found; }"
+                    + "}"
+                    + "return null;";
+
+    /**
+     * navigation timings, transferred bytes, request count and JS heap of the current page in one round trip
+     */
+    private static final String PAGE_PERFORMANCE_SCRIPT =
+            "var nav = window.performance && performance.getEntriesByType ? performance.getEntriesByType('navigation')[0] : null;"
+                    + "if (!nav) { return null; }"
+                    + "var resources = performance.getEntriesByType('resource');"
+                    + "var bytes = nav.transferSize || 0;"
+                    + "for (var i = 0; i < resources.length; i++) { bytes += resources[i].transferSize || 0; }"
+                    + "function span(start, end) { return start > 0 && end >= start ? end - start : -1; }"
+                    + "return {"
+                    + "  url: location.href,"
+                    + "  dns: span(nav.domainLookupStart, nav.domainLookupEnd),"
+                    + "  connect: span(nav.connectStart, nav.connectEnd),"
+                    + "  ttfb: span(nav.requestStart, nav.responseStart),"
+                    + "  domContentLoaded: nav.domContentLoadedEventEnd > 0 ? nav.domContentLoadedEventEnd : -1,"
+                    + "  load: nav.loadEventEnd > 0 ? nav.loadEventEnd : -1,"
+                    + "  transferBytes: bytes,"
+                    + "  requests: resources.length + 1,"
+                    + "  jsHeap: performance.memory ? performance.memory.usedJSHeapSize : -1"
+                    + "};";
+
+    private static final AtomicInteger asyncThreadNumber = new AtomicInteger();
+
+    private static final ExecutorService defaultAsyncExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "AbstractCrawler-async-" + asyncThreadNumber.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    });
+
     protected ChromeDriverPool driverPool;
 
     protected SecureRandom random = new SecureRandom();
 
+    protected FetchMode fetchMode = FetchMode.BROWSER;
+
+    protected RenderingRules renderingRules = new RenderingRules();
+
+    protected ScreenshotWriter screenshotWriter = ScreenshotWriter.getDefault();
+
+    protected PageLoadDetector pageLoadDetector = new PageLoadDetector();
+
+    /**
+     * runs the steps of the async API; driver-bound steps are additionally queued per driver context
+     */
+    protected Executor asyncExecutor = defaultAsyncExecutor;
+
+    private final Map<String, SerialExecutor> driverExecutors = new ConcurrentHashMap<>();
+
+    /**
+     * driver context of the step running on the current thread, to run steps it submits to its own context inline
+     */
+    private final ThreadLocal<String> driverStepContext = new ThreadLocal<>();
+
+    protected MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+    /**
+     * if set, {@link #goToUrl(String)} records the browser-side performance of every page it opens
+     */
+    protected PagePerformanceLog pagePerformanceLog;
+
+    /**
+     * waits for the load event before the page performance is read, with the eager page load strategy
+     * {@link #goToUrl(String)} returns while subresources are still loading; shorten its timeout or set it to null
+     * for sites whose load event never fires, e.g. with long polling
+     */
+    protected PageLoadDetector performanceLoadDetector = new PageLoadDetector()
+            .setCondition(PageLoadCondition.LOAD).setTimeout(5, TimeUnit.SECONDS);
+
     public AbstractCrawler(ChromeDriverPool driverPool) {
         super();
         this.driverPool = driverPool;
@@ -37,13 +154,12 @@ public class AbstractCrawler {
     }
 
     /**
-     * Returns a list with all links contained in the input
+     * Returns a list with all absolute links contained in the input, see {@link de.swatchy2dot0.crawl.LinkExtractor}
+     * for extracting and resolving the links of an HTML page
      */
     public static List<String> extractUrls(String text) {
         List<String> containedUrls = new ArrayList<String>();
-        String urlRegex = "((https?|ftp|gopher|telnet|file):((//)|(\\\\))+[\\w\\d:#@%/;$()~_?\\+-=\\\\\\.&]*)";
-        Pattern pattern = Pattern.compile(urlRegex, Pattern.CASE_INSENSITIVE);
-        Matcher urlMatcher = pattern.matcher(text);
+        Matcher urlMatcher = URL_PATTERN.matcher(text);
 
         while (urlMatcher.find()) {
             containedUrls.add(text.substring(urlMatcher.start(0), urlMatcher.end(0)));
@@ -52,22 +168,26 @@ public class AbstractCrawler {
         return containedUrls;
     }
 
+    /**
+     * Downloads the image and encodes it while reading, so only the Base64 text is held in memory. For many images use
+     * the {@link de.swatchy2dot0.image.ImagePipeline}, which downloads in parallel and caches on disk.
+     */
     public static String getBase64FromImageURL(URL imageUrl) {
 
         try {
             URLConnection ucon = imageUrl.openConnection();
-            InputStream is = ucon.getInputStream();
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            byte[] buffer = new byte[1024];
-            int read = 0;
-            while ((read = is.read(buffer, 0, buffer.length)) != -1) {
-                baos.write(buffer, 0, read);
+            long length = ucon.getContentLengthLong();
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream(length > 0 ? (int) Math.min(Integer.MAX_VALUE - 8, (length + 2) / 3 * 4) : 16 * 1024);
+            try (InputStream is = ucon.getInputStream(); OutputStream base64 = Base64.getEncoder().wrap(encoded)) {
+                byte[] buffer = new byte[16 * 1024];
+                int read;
+                while ((read = is.read(buffer, 0, buffer.length)) != -1) {
+                    base64.write(buffer, 0, read);
+                }
             }
-            baos.flush();
-            return Base64.getEncoder().encodeToString(baos.toByteArray());
+            return new String(encoded.toByteArray(), StandardCharsets.US_ASCII);
         } catch (Exception e) {
-            System.err.printf("Failed while reading bytes %s", e.getMessage());
-            e.printStackTrace();
+            logger.warn("reading image {} failed", imageUrl, e);
         }
         return null;
     }
@@ -90,27 +210,57 @@ public class AbstractCrawler {
         if (StringUtils.isBlank(url)) {
             throw new WebsiteWorkflowException("cannot open URL, because it is empty or null");
         }
+        driverPool.setCurrentHost(RuntimeContext.getCurrent().peekDriverContext(), MetricsRegistry.hostOf(url));
+        long startNanos = System.nanoTime();
+        boolean navigated;
+        try {
+            navigated = navigate(url, force);
+        } catch (RuntimeException ex) {
+            recordEvent("navigation_error");
+            throw ex;
+        } finally {
+            recordLatency(MetricsRegistry.NAVIGATION, startNanos);
+        }
+        PagePerformanceLog performanceLog = pagePerformanceLog;
+        if (navigated && performanceLog != null) {
+            recordPagePerformance(performanceLog);
+        }
+    }
+
+    /**
+     * @return false if the driver already showed the URL
+     */
+    private boolean navigate(String url, boolean force) throws IOException {
+        boolean navigated = false;
         String currentUrl = "";
+        driverPool.recycleIfDue();
         WebDriver driver = driverPool.driver();
         for (int i = 0; i < 10; i++) {
             try {
                 currentUrl = driver.getCurrentUrl();
             } catch (Exception ex) {
-                ex.printStackTrace();
-                System.out.println("closing driver because current URL cannot be determined");
+                logger.warn("closing driver because current URL cannot be determined", ex);
+                recordEvent("driver_error");
+                driverPool.recordError(driver);
                 driverPool.closeDriver();
                 driver = driverPool.driver();
             }
             if ((i == 0 && force) || !url.equals(currentUrl)) {
                 try {
                     driver.get(url);
+                    driverPool.recordNavigation(driver);
+                    navigated = true;
                 } catch (WebDriverException ex) {
+                    driverPool.recordError(driver);
                     if (isPageCrash(ex)) {
                         // retry once
-                        System.out.println("closing driver because of page crash -> retry");
+                        logger.warn("closing driver because of page crash -> retry");
+                        recordEvent("page_crash");
                         driverPool.closeDriver();
                         driver = driverPool.driver();
                         driver.get(url);
+                        driverPool.recordNavigation(driver);
+                        navigated = true;
                     } else {
                         throw ex;
                     }
@@ -119,24 +269,84 @@ public class AbstractCrawler {
                 break;
             }
         }
+        return navigated;
+    }
+
+    /**
+     * Reads the Navigation and Resource Timing entries of the current page once it has loaded completely, waiting as
+     * long as the {@link #performanceLoadDetector} allows, 5 seconds by default. If the load event has not fired by
+     * then, the timings are read anyway and the load timing is recorded as -1. Chrome keeps at most 250 resource entries per page by default, so the request count of very
+     * large pages is capped.
+     */
+    @SuppressWarnings("unchecked")
+    private void recordPagePerformance(PagePerformanceLog performanceLog) {
+        try {
+            WebDriver driver = driverPool.driver();
+            PageLoadDetector loadDetector = performanceLoadDetector;
+            if (loadDetector != null) {
+                PageLoadResult loaded = loadDetector.await(driver);
+                if (loaded.isTimedOut()) {
+                    logger.debug("page performance read before the load event, waited {} ms", loaded.getDurationMillis());
+                }
+            }
+            Object values = ((JavascriptExecutor) driver).executeScript(PAGE_PERFORMANCE_SCRIPT);
+            if (values instanceof Map) {
+                performanceLog.record(PagePerformance.fromMap((Map<String, Object>) values));
+            }
+        } catch (Exception ex) {
+            logger.debug("page performance could not be read: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Loads the HTML of a page according to the {@link #fetchMode}. In {@link FetchMode#HYBRID} a plain HTTP
+     * response is used when the {@link #renderingRules} accept it, otherwise the page is opened in Chrome like
+     * {@link #goToUrl(String)} does. A failed plain fetch is rendered as well, unless the host is never rendered.
+     *
+     * @throws IOException if the plain fetch failed and the page must not be rendered
+     */
+    protected FetchedPage fetchPage(String url) throws IOException {
+        if (StringUtils.isBlank(url)) {
+            throw new WebsiteWorkflowException("cannot fetch URL, because it is empty or null");
+        }
+        long startMillis = System.currentTimeMillis();
+        if (fetchMode == FetchMode.HTTP || (fetchMode == FetchMode.HYBRID && renderingRules.shouldTryPlainFetch(url))) {
+            String html = null;
+            try {
+                html = ChromeDriverPool.getHTML(url);
+            } catch (Exception ex) {
+                if (fetchMode == FetchMode.HTTP || renderingRules.isNeverRendered(url)) {
+                    throw new IOException("fetching " + url + " failed: " + ex.getMessage(), ex);
+                }
+                logger.debug("plain fetch of {} failed, rendering it: {}", url, ex.getMessage());
+            }
+            if (fetchMode == FetchMode.HTTP || renderingRules.isSufficient(url, html)) {
+                return new FetchedPage(url, html, false, System.currentTimeMillis() - startMillis);
+            }
+        }
+        goToUrl(url);
+        String html = driverPool.driver().getPageSource();
+        return new FetchedPage(url, html, true, System.currentTimeMillis() - startMillis);
     }
 
     protected List<WebElement> findByNumberOfElementsToBe(final By locator, final Integer number) {
+        long startNanos = System.nanoTime();
         try {
             // wait for the system to acknowledge the new photo, and use the WebDriverWait to verify
             // that the new photo is there
             WebDriverWait wait = new WebDriverWait(driverPool.driver(), 10);
-            ExpectedCondition condition = ExpectedConditions.numberOfElementsToBe(locator, 2);
-            wait.until(condition);
-
-            return findWebElements(locator);
+            return wait.until(ExpectedConditions.numberOfElementsToBe(locator, number));
         } catch (Exception ex) {
             // element not found
+            recordEvent("element_not_found");
+        } finally {
+            recordLatency(MetricsRegistry.ELEMENT_LOOKUP, startNanos);
         }
         return new ArrayList<>();
     }
 
     protected List<WebElement> findWebElements(By... bys) {
+        long startNanos = System.nanoTime();
         List<WebElement> result = new ArrayList<>();
         for (By by : bys) {
             try {
@@ -145,6 +355,7 @@ public class AbstractCrawler {
                 // element not found
             }
         }
+        recordLatency(MetricsRegistry.ELEMENT_LOOKUP, startNanos);
         return result;
     }
 
@@ -173,86 +384,227 @@ public class AbstractCrawler {
         return findWebElement(by, 10L);
     }
 
+    /**
+     * Waits until any of the locators matches and returns the first match. All locators are checked in one script
+     * call per poll, so a chain of fallback locators takes as long as a single one; if several match, the earlier
+     * locator wins.
+     */
     protected Optional<WebElement> findEitherWebElement(int timeOutInSeconds, By... bys) {
-        for (int i = 1; i <= timeOutInSeconds; i++) {
-            for (By by : bys) {
-                Optional<WebElement> element = findWebElement(by, 1);
-                if (element.isPresent()) {
-                    return element;
-                }
-            }
+        long startNanos = System.nanoTime();
+        try {
+            return Optional.ofNullable(new WebDriverWait(driverPool.driver(), timeOutInSeconds, ANY_OF_POLL_MILLIS)
+                    .until(anyPresent(bys)));
+        } catch (Exception ex) {
+            // element not found
+            recordEvent("element_not_found");
+        } finally {
+            recordLatency(MetricsRegistry.ELEMENT_LOOKUP, startNanos);
         }
         return Optional.empty();
     }
 
     protected Optional<WebElement> findWebElement(By by, long timeOutInSeconds) {
+        long startNanos = System.nanoTime();
         try {
             return Optional.ofNullable(new WebDriverWait(driverPool.driver(), timeOutInSeconds)
                     .until(ExpectedConditions.presenceOfElementLocated(by)));
         } catch (Exception ex) {
             // element not found
+            recordEvent("element_not_found");
+        } finally {
+            recordLatency(MetricsRegistry.ELEMENT_LOOKUP, startNanos);
         }
         return Optional.empty();
     }
 
-    protected Optional<WebElement> findWebElementByTextContains(String searchText, By by) {
-        try {
-            for (WebElement element : findWebElements(by)) {
-                String text = element.getText();
-                if (text.toLowerCase().contains(searchText.toLowerCase())) {
-                    return Optional.of(element);
+    private static ExpectedCondition<WebElement> anyPresent(final By... bys) {
+        final List<List<String>> locators = scriptLocators(bys);
+        return new ExpectedCondition<WebElement>() {
+            @Override
+            public WebElement apply(WebDriver driver) {
+                if (locators != null && driver instanceof JavascriptExecutor) {
+                    Object found = ((JavascriptExecutor) driver).executeScript(FIND_ANY_SCRIPT, locators);
+                    return found instanceof WebElement ? (WebElement) found : null;
                 }
+                for (By by : bys) {
+                    List<WebElement> elements = driver.findElements(by);
+                    if (!elements.isEmpty()) {
+                        return elements.get(0);
+                    }
+                }
+                return null;
             }
-        } catch (Exception ex) {
-            // element not found
-        }
-        return Optional.empty();
+
+            @Override
+            public String toString() {
+                return "presence of any element located by " + Arrays.toString(bys);
+            }
+        };
     }
 
-    protected Optional<WebElement> findWebElementByTextContains(WebElement parentElement, String searchText, By by) {
-        try {
-            for (WebElement element : findWebElements(parentElement, by)) {
-                String text = element.getText();
-                if (text.toLowerCase().contains(searchText.toLowerCase())) {
-                    return Optional.of(element);
-                }
+    /**
+     * Translates the locators for {@link #FIND_ANY_SCRIPT}.
+     *
+     * @return null if a locator cannot be evaluated in the page, e.g. a chained one
+     */
+    static List<List<String>> scriptLocators(By... bys) {
+        List<List<String>> locators = new ArrayList<>(bys.length);
+        for (By by : bys) {
+            String kind;
+            if (by instanceof By.ById) {
+                kind = "id";
+            } else if (by instanceof By.ByName) {
+                kind = "name";
+            } else if (by instanceof By.ByClassName) {
+                kind = "className";
+            } else if (by instanceof By.ByTagName) {
+                kind = "tagName";
+            } else if (by instanceof By.ByCssSelector) {
+                kind = "cssSelector";
+            } else if (by instanceof By.ByXPath) {
+                kind = "xpath";
+            } else if (by instanceof By.ByLinkText) {
+                kind = "linkText";
+            } else if (by instanceof By.ByPartialLinkText) {
+                kind = "partialLinkText";
+            } else {
+                return null;
             }
-        } catch (Exception ex) {
-            // element not found
+            // Selenium 3 exposes the value only through toString(), e.g. "By.cssSelector: div.price"
+            String prefix = "By." + kind + ": ";
+            String description = by.toString();
+            if (!description.startsWith(prefix)) {
+                return null;
+            }
+            locators.add(Arrays.asList(kind, description.substring(prefix.length())));
         }
-        return Optional.empty();
+        return locators;
+    }
+
+    protected Optional<WebElement> findWebElementByTextContains(String searchText, By by) {
+        return first(findWebElementsByTextContains(searchText, by, true));
+    }
+
+    protected Optional<WebElement> findWebElementByTextContains(WebElement parentElement, String searchText, By by) {
+        return first(findWebElementsByTextContains(parentElement, searchText, by, true));
     }
 
     protected Optional<WebElement> findWebElementByInnerHTMLContains(String searchText, By by) {
-        try {
-            for (WebElement element : findWebElements(by)) {
-                String html = element.getAttribute("innerHTML");
-                if (html.toLowerCase().contains(searchText.toLowerCase())) {
-                    return Optional.of(element);
-                }
-            }
-        } catch (Exception ex) {
-            // element not found
-        }
-        return Optional.empty();
+        return first(findWebElementsByInnerHTMLContains(searchText, by, true));
     }
 
     protected Optional<WebElement> findWebElementByInnerHTMLContains(WebElement parentElement, String searchText,
                                                                      By by) {
+        return first(findWebElementsByInnerHTMLContains(parentElement, searchText, by, true));
+    }
+
+    /**
+     * Returns the elements whose visible text contains the search text, ignoring case. The texts are compared inside
+     * the page, so the lookup costs two round-trips to the driver regardless of the number of elements.
+     */
+    protected List<WebElement> findWebElementsByTextContains(String searchText, By by) {
+        return findWebElementsByTextContains(searchText, by, false);
+    }
+
+    protected List<WebElement> findWebElementsByTextContains(WebElement parentElement, String searchText, By by) {
+        return findWebElementsByTextContains(parentElement, searchText, by, false);
+    }
+
+    /**
+     * Returns the elements whose inner HTML contains the search text, ignoring case; compared inside the page like
+     * {@link #findWebElementsByTextContains(String, By)}.
+     */
+    protected List<WebElement> findWebElementsByInnerHTMLContains(String searchText, By by) {
+        return findWebElementsByInnerHTMLContains(searchText, by, false);
+    }
+
+    protected List<WebElement> findWebElementsByInnerHTMLContains(WebElement parentElement, String searchText, By by) {
+        return findWebElementsByInnerHTMLContains(parentElement, searchText, by, false);
+    }
+
+    /**
+     * Visible texts of all elements, read with one script call instead of one {@link WebElement#getText()} per
+     * element. The list has the same order and size as the input.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<String> getTexts(List<WebElement> elements) throws IOException {
+        if (elements.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return (List<String>) ((JavascriptExecutor) driverPool.driver()).executeScript(
+                "return Array.prototype.map.call(arguments[0], function(element) { return element.innerText; });",
+                elements);
+    }
+
+    /**
+     * Values of the property or attribute of all elements, resolved like {@link WebElement#getAttribute(String)} but
+     * with one script call for all elements. Missing values are null.
+     */
+    @SuppressWarnings("unchecked")
+    protected List<String> getAttributes(List<WebElement> elements, String name) throws IOException {
+        if (elements.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return (List<String>) ((JavascriptExecutor) driverPool.driver()).executeScript(
+                "var name = arguments[1];"
+                        + "return Array.prototype.map.call(arguments[0], function(element) {"
+                        + "  var value = element[name];"
+                        + "  if (value === undefined || value === null || typeof value === 'object' || typeof value === 'function') {"
+                        + "    value = element.getAttribute(name);"
+                        + "  }"
+                        + "  return value === null || value === undefined ? null : String(value);"
+                        + "});",
+                elements, name);
+    }
+
+    private List<WebElement> findWebElementsByTextContains(String searchText, By by, boolean firstOnly) {
+        return filterContaining(findWebElements(by), searchText, false, firstOnly);
+    }
+
+    private List<WebElement> findWebElementsByTextContains(WebElement parentElement, String searchText, By by,
+                                                           boolean firstOnly) {
+        return filterContaining(findWebElements(parentElement, by), searchText, false, firstOnly);
+    }
+
+    private List<WebElement> findWebElementsByInnerHTMLContains(String searchText, By by, boolean firstOnly) {
+        return filterContaining(findWebElements(by), searchText, true, firstOnly);
+    }
+
+    private List<WebElement> findWebElementsByInnerHTMLContains(WebElement parentElement, String searchText, By by,
+                                                                boolean firstOnly) {
+        return filterContaining(findWebElements(parentElement, by), searchText, true, firstOnly);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<WebElement> filterContaining(List<WebElement> elements, String searchText, boolean innerHtml,
+                                              boolean firstOnly) {
+        if (elements.isEmpty()) {
+            return elements;
+        }
         try {
-            for (WebElement element : findWebElements(parentElement, by)) {
-                String html = element.getAttribute("innerHTML");
-                if (html.toLowerCase().contains(searchText.toLowerCase())) {
-                    return Optional.of(element);
-                }
-            }
+            return (List<WebElement>) ((JavascriptExecutor) driverPool.driver()).executeScript(
+                    "var elements = arguments[0], search = arguments[1].toLowerCase(), matches = [];"
+                            + "for (var i = 0; i < elements.length; i++) {"
+                            + "  var value = arguments[2] ? elements[i].innerHTML : elements[i].innerText;"
+                            + "  if (value && value.toLowerCase().indexOf(search) >= 0) {"
+                            + "    matches.push(elements[i]);"
+                            + "    if (arguments[3]) break;"
+                            + "  }"
+                            + "}"
+                            + "return matches;",
+                    elements, searchText, innerHtml, firstOnly);
         } catch (Exception ex) {
             // element not found
         }
-        return Optional.empty();
+        return new ArrayList<>();
+    }
+
+    private static Optional<WebElement> first(List<WebElement> elements) {
+        return elements.isEmpty() ? Optional.empty() : Optional.of(elements.get(0));
     }
 
     protected void click(WebElement elementToClick, long timeOutInSeconds) {
+        long startNanos = System.nanoTime();
         try {
             WebDriverWait wait = new WebDriverWait(driverPool.driver(), timeOutInSeconds);
             WebElement elementClickable = wait.until(ExpectedConditions.elementToBeClickable(elementToClick));
@@ -260,52 +612,88 @@ public class AbstractCrawler {
             new Actions(driverPool.driver()).moveToElement(elementClickable).click().build().perform();
         } catch (Exception ex) {
             // element not found
+            recordEvent("click_failed");
+        } finally {
+            recordLatency(MetricsRegistry.CLICK, startNanos);
         }
     }
 
+    /**
+     * Captures the page of this crawler's driver and returns once the PNG is written.
+     */
     protected void takeScreenshot(String fileName) throws IOException {
-
-        String theadName = Thread.currentThread().getName();
-
-        File scrFile = ((TakesScreenshot) ChromeDriverPool.getInstance().driver()).getScreenshotAs(OutputType.FILE);
-        // Now you can do whatever you need to do with it, for example copy
-        // somewhere
-        try {
-            String pathname = fileName + ".png";
-            FileUtils.copyFile(scrFile, new File(pathname));
-            System.out.println(theadName + " screenshot           : " + pathname);
-        } catch (IOException e) {
-        }
+        awaitWritten(capturePage(fileName));
     }
 
+    /**
+     * Captures only the bounding box of the element, also if it is larger than the viewport, and returns once the PNG
+     * is written. The browser clips and encodes the image; decoding and writing happens in the
+     * {@link ScreenshotWriter}.
+     */
     protected void takeScreenshot(String fileName, WebElement element) throws IOException {
+        awaitWritten(captureElement(fileName, element));
+    }
 
-        String theadName = Thread.currentThread().getName();
+    private CompletableFuture<File> capturePage(String fileName) throws IOException {
+        long startNanos = System.nanoTime();
+        byte[] png = ((TakesScreenshot) driverPool.driver()).getScreenshotAs(OutputType.BYTES);
+        recordLatency(MetricsRegistry.SCREENSHOT, startNanos);
+        return screenshotWriter.write(new File(fileName + ".png"), png);
+    }
 
-        // Get entire page screenshot
-        File scrFile = ((TakesScreenshot) ChromeDriverPool.getInstance().driver()).getScreenshotAs(OutputType.FILE);
+    private CompletableFuture<File> captureElement(String fileName, WebElement element) throws IOException {
+        long startNanos = System.nanoTime();
         try {
-            BufferedImage fullImg = ImageIO.read(scrFile);
-
-            // Get the location of element on the page
-            Point point = element.getLocation();
-
-            // Get width and height of the element
-            int eleWidth = element.getSize().getWidth();
-            int eleHeight = element.getSize().getHeight();
-
-            // Crop the entire page screenshot to get only element screenshot
-            BufferedImage eleScreenshot = fullImg.getSubimage(point.getX(), point.getY(),
-                    eleWidth, eleHeight);
+            return captureClip(fileName, element);
+        } finally {
+            recordLatency(MetricsRegistry.SCREENSHOT, startNanos);
+        }
+    }
 
-            // Now you can do whatever you need to do with it, for example copy
-            // somewhere
+    private static void awaitWritten(CompletableFuture<File> written) throws IOException {
+        try {
+            written.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) ex.getCause()).getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
 
-            String pathname = fileName + ".png";
-            ImageIO.write(eleScreenshot, "png", new File(pathname));
-            System.out.println(theadName + " screenshot           : " + pathname);
-        } catch (IOException e) {
+    @SuppressWarnings("unchecked")
+    private CompletableFuture<File> captureClip(String fileName, WebElement element) throws IOException {
+        WebDriver driver = driverPool.driver();
+        File target = new File(fileName + ".png");
+        List<Number> box = (List<Number>) ((JavascriptExecutor) driver).executeScript(
+                "var rect = arguments[0].getBoundingClientRect();"
+                        + "return [rect.left + window.pageXOffset, rect.top + window.pageYOffset, rect.width, rect.height];",
+                element);
+        if (box.get(2).doubleValue() < 1 || box.get(3).doubleValue() < 1) {
+            throw new WebsiteWorkflowException("cannot take screenshot of an element without size");
+        }
+        Map<String, Object> clip = new HashMap<>();
+        clip.put("x", box.get(0));
+        clip.put("y", box.get(1));
+        clip.put("width", box.get(2));
+        clip.put("height", box.get(3));
+        clip.put("scale", 1);
+        Map<String, Object> params = new HashMap<>();
+        params.put("format", "png");
+        params.put("clip", clip);
+        params.put("captureBeyondViewport", true);
+        try {
+            Object data = ChromeDevTools.execute(driver, "Page.captureScreenshot", params).get("data");
+            if (data instanceof String) {
+                return screenshotWriter.writeBase64(target, (String) data);
+            }
+        } catch (WebDriverException ex) {
+            logger.info("clipped screenshot failed, using element screenshot: {}", ex.getMessage());
         }
+        return screenshotWriter.write(target, element.getScreenshotAs(OutputType.BYTES));
     }
 
     protected void randomSleep(long minMillis, long maxMillis) {
@@ -334,7 +722,10 @@ public class AbstractCrawler {
 
         String encodedHtml = Base64.getEncoder().encodeToString(htmlContent.getBytes());
 
+        driverPool.setCurrentHost(RuntimeContext.getCurrent().peekDriverContext(), MetricsRegistry.hostOf(destinationUrl));
+        long startNanos = System.nanoTime();
         driverPool.driver().get("data:text/html;base64," + encodedHtml);
+        recordLatency(MetricsRegistry.NAVIGATION, startNanos);
 
         Optional<WebElement> injectedSubmitOpt = findWebElement(By.id("mySubmit"));
         if (injectedSubmitOpt.isPresent()) {
@@ -342,17 +733,163 @@ public class AbstractCrawler {
         }
     }
 
-    protected void waitForPageLoad(WebElement elementThatShallDisappearWithPageLoad) {
-        long waitStartMillis = System.currentTimeMillis();
+    /**
+     * Runs a step that uses the driver of the current driver context. Steps of the same driver context run one after
+     * another in the order they were submitted, steps of other contexts and {@link #runAsync(Callable)} concurrently.
+     * The step sees the driver context and proxy flag of the caller.
+     * <p>
+     * A step that submits another step of its own driver context runs that step inline, ahead of the steps queued
+     * meanwhile, so waiting for its future cannot deadlock. Only steps are serialized: a synchronous call like
+     * {@link #goToUrl(String)} from another thread of the same driver context uses the driver concurrently with a
+     * running step, so wait for the pending steps of a driver context before calling it synchronously.
+     */
+    protected <T> CompletableFuture<T> onDriver(Callable<T> step) {
+        RuntimeContext.Snapshot snapshot = RuntimeContext.capture();
+        String driverContext = snapshot.getDriverContext();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Runnable task = task(snapshot, step, result);
+        if (driverContext.equals(driverStepContext.get())) {
+            task.run();
+            return result;
+        }
+        Runnable driverStep = () -> {
+            driverStepContext.set(driverContext);
+            try {
+                task.run();
+            } finally {
+                driverStepContext.remove();
+            }
+        };
+        while (true) {
+            SerialExecutor driverExecutor = driverExecutors.computeIfAbsent(driverContext,
+                    key -> new SerialExecutor(asyncExecutor, drained -> driverExecutors.remove(key, drained)));
+            if (driverExecutor.execute(driverStep, result::completeExceptionally)) {
+                return result;
+            }
+            // drained and retired, replace it with a fresh one
+            driverExecutors.remove(driverContext, driverExecutor);
+        }
+    }
+
+    /**
+     * Runs a step that does not touch the driver, e.g. an image download or persisting a result, concurrently to
+     * the driver-bound steps.
+     */
+    protected <T> CompletableFuture<T> runAsync(Callable<T> step) {
+        return submit(asyncExecutor, RuntimeContext.capture(), step);
+    }
+
+    private static <T> CompletableFuture<T> submit(Executor executor, RuntimeContext.Snapshot snapshot, Callable<T> step) {
+        CompletableFuture<T> result = new CompletableFuture<>();
         try {
-            while (System.currentTimeMillis() - waitStartMillis < 20000L) {
-                elementThatShallDisappearWithPageLoad.findElement(By.xpath("./.."));
+            executor.execute(task(snapshot, step, result));
+        } catch (RejectedExecutionException ex) {
+            result.completeExceptionally(ex);
+        }
+        return result;
+    }
+
+    private static <T> Runnable task(RuntimeContext.Snapshot snapshot, Callable<T> step, CompletableFuture<T> result) {
+        return () -> {
+            try {
+                result.complete(snapshot.call(step));
+            } catch (Throwable ex) {
+                result.completeExceptionally(ex);
             }
-        } catch (Exception ignore) {
-            // ignore
+        };
+    }
+
+    protected CompletableFuture<Void> goToUrlAsync(String url) {
+        return onDriver(() -> {
+            goToUrl(url);
+            return null;
+        });
+    }
+
+    protected CompletableFuture<Optional<WebElement>> findWebElementAsync(By by) {
+        return onDriver(() -> findWebElement(by));
+    }
+
+    protected CompletableFuture<Optional<WebElement>> findWebElementAsync(By by, long timeOutInSeconds) {
+        return onDriver(() -> findWebElement(by, timeOutInSeconds));
+    }
+
+    protected CompletableFuture<List<WebElement>> findWebElementsAsync(By... bys) {
+        return onDriver(() -> findWebElements(bys));
+    }
+
+    protected CompletableFuture<Void> clickAsync(WebElement elementToClick, long timeOutInSeconds) {
+        return onDriver(() -> {
+            click(elementToClick, timeOutInSeconds);
+            return null;
+        });
+    }
+
+    /**
+     * Completes when the PNG is written; the next driver-bound step already runs once the page has been captured.
+     */
+    protected CompletableFuture<File> takeScreenshotAsync(String fileName) {
+        return onDriver(() -> capturePage(fileName)).thenCompose(written -> written);
+    }
+
+    protected CompletableFuture<File> takeScreenshotAsync(String fileName, WebElement element) {
+        return onDriver(() -> captureElement(fileName, element)).thenCompose(written -> written);
+    }
+
+    protected CompletableFuture<Void> sendPostRequestAsync(Map<String, String> formData, String destinationUrl) {
+        return onDriver(() -> {
+            sendPostRequest(formData, destinationUrl);
+            return null;
+        });
+    }
+
+    protected CompletableFuture<PageLoadResult> waitForPageLoadAsync() {
+        return onDriver(this::awaitPageLoad);
+    }
+
+    /**
+     * Waits until the element of the current page is gone and the next page is loaded as configured in the
+     * {@link #pageLoadDetector}, see {@link #awaitPageLoad(WebElement)} for the outcome.
+     */
+    protected void waitForPageLoad(WebElement elementThatShallDisappearWithPageLoad) {
+        awaitPageLoad(elementThatShallDisappearWithPageLoad);
+    }
+
+    protected void waitForPageLoad() {
+        awaitPageLoad();
+    }
+
+    /**
+     * Like {@link #waitForPageLoad(WebElement)}, but tells which condition was reached and whether the wait timed out.
+     */
+    protected PageLoadResult awaitPageLoad(WebElement elementThatShallDisappearWithPageLoad) {
+        long startNanos = System.nanoTime();
+        try {
+            return pageLoadDetector.await(driverPool.driver(true), elementThatShallDisappearWithPageLoad);
+        } finally {
+            recordLatency(MetricsRegistry.WAIT, startNanos);
+        }
+    }
+
+    protected PageLoadResult awaitPageLoad() {
+        long startNanos = System.nanoTime();
+        try {
+            return pageLoadDetector.await(driverPool.driver(true));
+        } finally {
+            recordLatency(MetricsRegistry.WAIT, startNanos);
         }
     }
 
+    private void recordLatency(String operation, long startNanos) {
+        String driverContext = RuntimeContext.getCurrent().peekDriverContext();
+        metrics.recordLatency(operation, driverContext, driverPool.getCurrentHost(driverContext), System.nanoTime() - startNanos);
+    }
+
+    private void recordEvent(String event) {
+        String driverContext = RuntimeContext.getCurrent().peekDriverContext();
+        metrics.increment(event, driverContext, driverPool.getCurrentHost(driverContext));
+    }
+
     protected void scrollToPageEndJS() {
         try {
             JavascriptExecutor js = (JavascriptExecutor) driverPool.driver();
@@ -1,18 +1,22 @@
 package de.swatchy2dot0.base;
 
+import de.swatchy2dot0.image.ImageHandle;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.sql.Timestamp;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
 public class AffiliateElement implements Serializable {
 
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
 
     private String url;
 
@@ -22,7 +26,7 @@ public class AffiliateElement implements Serializable {
 
     private List<String> largeImageUrls;
 
-    private List<BufferedImage> downloadedImages;
+    private List<ImageHandle> imageHandles;
 
     private String imageStripRelativePath;
 
@@ -46,7 +50,7 @@ public class AffiliateElement implements Serializable {
 
     public AffiliateElement() {
         largeImageUrls = new ArrayList<>();
-        downloadedImages = new ArrayList<>();
+        imageHandles = new ArrayList<>();
         createDate = new Timestamp(new Date().getTime());
         crawled = false;
     }
@@ -96,12 +100,38 @@ public class AffiliateElement implements Serializable {
         this.largeImageUrls = largeImageUrls;
     }
 
+    /**
+     * View of the images that decodes an image on every access; prefer {@link #getImageHandles()} and
+     * {@link ImageHandle#decode(int, int)} where a smaller image is enough. Added images are encoded to disk, removed
+     * or replaced ones are released. {@code set} and {@code remove} decode the previous image to return it,
+     * {@code clear} and removing a range do not decode.
+     */
     public List<BufferedImage> getDownloadedImages() {
-        return downloadedImages;
+        return new DecodingImageList();
     }
 
+    /**
+     * Encodes the images to disk, the element keeps only {@link ImageHandle}s. The files of the images replaced are
+     * released.
+     */
     public void setDownloadedImages(List<BufferedImage> downloadedImages) {
-        this.downloadedImages = downloadedImages;
+        List<ImageHandle> handles = new ArrayList<>(downloadedImages.size());
+        for (BufferedImage image : downloadedImages) {
+            handles.add(encode(image));
+        }
+        List<ImageHandle> replaced = this.imageHandles;
+        this.imageHandles = handles;
+        if (replaced != null) {
+            replaced.forEach(ImageHandle::release);
+        }
+    }
+
+    public List<ImageHandle> getImageHandles() {
+        return imageHandles;
+    }
+
+    public void setImageHandles(List<ImageHandle> imageHandles) {
+        this.imageHandles = imageHandles;
     }
 
     public String getImageStripRelativePath() {
@@ -208,4 +238,64 @@ public class AffiliateElement implements Serializable {
     public void setAffiliateLink(String linkText) {
         this.linkText = linkText;
     }
-}
\ No newline at end of file
+
+    private static ImageHandle encode(BufferedImage image) {
+        try {
+            return ImageHandle.encode(image);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private final class DecodingImageList extends AbstractList<BufferedImage> {
+
+        @Override
+        public BufferedImage get(int index) {
+            try {
+                return imageHandles.get(index).decode();
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override
+        public int size() {
+            return imageHandles.size();
+        }
+
+        @Override
+        public BufferedImage set(int index, BufferedImage image) {
+            BufferedImage previous = get(index);
+            imageHandles.set(index, encode(image)).release();
+            return previous;
+        }
+
+        @Override
+        public void add(int index, BufferedImage image) {
+            imageHandles.add(index, encode(image));
+            modCount++;
+        }
+
+        @Override
+        public BufferedImage remove(int index) {
+            BufferedImage previous = get(index);
+            imageHandles.remove(index).release();
+            modCount++;
+            return previous;
+        }
+
+        @Override
+        public void clear() {
+            removeRange(0, imageHandles.size());
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            List<ImageHandle> removed = imageHandles.subList(fromIndex, toIndex);
+            List<ImageHandle> released = new ArrayList<>(removed);
+            removed.clear();
+            released.forEach(ImageHandle::release);
+            modCount++;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package de.swatchy2dot0.base;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Requests that Chrome must not send, see {@link ChromeDriverPool#setBlockingRules(String, BlockingRules)}.
+ * <p>
+ * Rules are URL patterns as understood by the DevTools {@code Network.setBlockedURLs} command, {@code *} matches any
+ * text. The network layer does not know the resource type of a request before it is sent, so resource types are
+ * blocked by their file extensions.
+ */
+public class BlockingRules {
+
+    /**
+     * Hosts of common analytics, tag manager and ad services.
+     */
+    private static final String[] TRACKING_PATTERNS = {
+            "*google-analytics.com/*", "*googletagmanager.com/*", "*googlesyndication.com/*", "*googleadservices.com/*",
+            "*doubleclick.net/*", "*adservice.google.*", "*connect.facebook.net/*", "*facebook.com/tr*",
+            "*hotjar.com/*", "*clarity.ms/*", "*bat.bing.com/*", "*scorecardresearch.com/*", "*criteo.com/*",
+            "*criteo.net/*", "*amazon-adsystem.com/*", "*taboola.com/*", "*outbrain.com/*", "*adnxs.com/*",
+            "*quantserve.com/*", "*newrelic.com/*", "*nr-data.net/*", "*sentry.io/*"
+    };
+
+    public enum ResourceType {
+
+        IMAGE("jpg", "jpeg", "png", "gif", "webp", "avif", "svg", "ico", "bmp"),
+
+        FONT("woff", "woff2", "ttf", "otf", "eot"),
+
+        MEDIA("mp4", "webm", "ogg", "ogv", "mp3", "m4a", "m4v", "wav", "m3u8"),
+
+        STYLESHEET("css"),
+
+        SCRIPT("js");
+
+        private final String[] extensions;
+
+        ResourceType(String... extensions) {
+            this.extensions = extensions;
+        }
+    }
+
+    private final List<String> urlPatterns = new CopyOnWriteArrayList<>();
+
+    private final Set<ResourceType> resourceTypes = Collections.synchronizedSet(EnumSet.noneOf(ResourceType.class));
+
+    public BlockingRules blockUrl(String urlPattern) {
+        urlPatterns.add(urlPattern);
+        return this;
+    }
+
+    public BlockingRules blockType(ResourceType resourceType) {
+        resourceTypes.add(resourceType);
+        return this;
+    }
+
+    /**
+     * Blocks the requests of well-known analytics, tag manager and advertising hosts.
+     */
+    public BlockingRules blockTracking() {
+        Collections.addAll(urlPatterns, TRACKING_PATTERNS);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return urlPatterns.isEmpty() && resourceTypes.isEmpty();
+    }
+
+    /**
+     * @return the URL patterns for {@code Network.setBlockedURLs}, including those of the blocked resource types
+     */
+    public List<String> getUrlPatterns() {
+        List<String> patterns = new ArrayList<>(urlPatterns);
+        synchronized (resourceTypes) {
+            for (ResourceType resourceType : resourceTypes) {
+                for (String extension : resourceType.extensions) {
+                    patterns.add("*." + extension);
+                    patterns.add("*." + extension + "?*");
+                }
+            }
+        }
+        return patterns;
+    }
+}
@@ -0,0 +1,97 @@
+package de.swatchy2dot0.base;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Requests blocked by the {@link BlockingRules} of one driver context.
+ * <p>
+ * Blocked requests never reach the server, so their size is unknown. The bytes saved are estimated with the average
+ * transfer size of the requests of the same resource type that were loaded, or of all loaded requests if none of that
+ * type was seen.
+ */
+public class BlockingStatistics {
+
+    private static final int MAX_PENDING_REQUESTS = 10000;
+
+    private final Map<String, long[]> blockedByType = new TreeMap<>();
+
+    private final Map<String, long[]> loadedByType = new TreeMap<>();
+
+    /**
+     * resource type per request id, between the response and the end of loading
+     */
+    private final Map<String, String> pendingTypes = new LinkedHashMap<String, String>(64, 0.75f, false) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_PENDING_REQUESTS;
+        }
+    };
+
+    public synchronized long getBlockedRequests() {
+        long blocked = 0;
+        for (long[] count : blockedByType.values()) {
+            blocked += count[0];
+        }
+        return blocked;
+    }
+
+    /**
+     * @param resourceType a DevTools resource type like {@code Image}, {@code Script} or {@code Font}
+     */
+    public synchronized long getBlockedRequests(String resourceType) {
+        long[] count = blockedByType.get(resourceType);
+        return count == null ? 0L : count[0];
+    }
+
+    public synchronized long getEstimatedBytesSaved() {
+        long totalBytes = 0;
+        long totalCount = 0;
+        for (long[] loaded : loadedByType.values()) {
+            totalCount += loaded[0];
+            totalBytes += loaded[1];
+        }
+        long overallAverage = totalCount == 0 ? 0L : totalBytes / totalCount;
+        long saved = 0;
+        for (Map.Entry<String, long[]> blocked : blockedByType.entrySet()) {
+            long[] loaded = loadedByType.get(blocked.getKey());
+            long average = loaded == null || loaded[0] == 0 ? overallAverage : loaded[1] / loaded[0];
+            saved += blocked.getValue()[0] * average;
+        }
+        return saved;
+    }
+
+    synchronized void recordBlocked(String resourceType) {
+        blockedByType.computeIfAbsent(String.valueOf(resourceType), key -> new long[1])[0]++;
+    }
+
+    synchronized void recordResponse(String requestId, String resourceType) {
+        pendingTypes.put(requestId, String.valueOf(resourceType));
+    }
+
+    synchronized void recordLoaded(String requestId, long encodedBytes) {
+        String resourceType = pendingTypes.remove(requestId);
+        if (resourceType == null) {
+            return;
+        }
+        long[] loaded = loadedByType.computeIfAbsent(resourceType, key -> new long[2]);
+        loaded[0]++;
+        loaded[1] += encodedBytes;
+    }
+
+    synchronized void forget(String requestId) {
+        pendingTypes.remove(requestId);
+    }
+
+    @Override
+    public synchronized String toString() {
+        Map<String, Long> blocked = new TreeMap<>();
+        for (Map.Entry<String, long[]> entry : blockedByType.entrySet()) {
+            blocked.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return "BlockingStatistics{blocked=" + blocked + ", estimatedBytesSaved=" + getEstimatedBytesSaved() + "}";
+    }
+}
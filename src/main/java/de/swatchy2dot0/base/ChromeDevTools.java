@@ -0,0 +1,95 @@
+package de.swatchy2dot0.base;
+
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.CommandExecutor;
+import org.openqa.selenium.remote.HttpCommandExecutor;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends Chrome DevTools Protocol commands through chromedriver's {@code goog/cdp/execute} endpoint. Selenium 3 has
+ * no DevTools API, but chromedriver forwards these commands to the page of the current window. Also reads the W3C
+ * timeouts of a session, which Selenium 3 can only set.
+ */
+public class ChromeDevTools {
+
+    private static final Json json = new Json();
+
+    private ChromeDevTools() {
+        super();
+    }
+
+    public static Map<String, Object> execute(WebDriver driver, String command) {
+        return execute(driver, command, Collections.emptyMap());
+    }
+
+    public static Map<String, Object> execute(WebDriver driver, String command, Map<String, Object> params) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("cmd", command);
+        body.put("params", params);
+        return send(driver, "POST", "/goog/cdp/execute", body, command);
+    }
+
+    /**
+     * @return the timeouts of the session in milliseconds by type ({@code script}, {@code pageLoad},
+     * {@code implicit}), a null value means no timeout
+     */
+    public static Map<String, Object> getTimeouts(WebDriver driver) {
+        return send(driver, "GET", "/timeouts", null, "reading timeouts");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> send(WebDriver driver, String method, String sessionPath, Map<String, Object> body, String command) {
+        if (!(driver instanceof RemoteWebDriver)) {
+            throw new WebsiteWorkflowException("DevTools commands need a RemoteWebDriver, not " + driver.getClass().getName());
+        }
+        RemoteWebDriver remoteDriver = (RemoteWebDriver) driver;
+        CommandExecutor executor = remoteDriver.getCommandExecutor();
+        if (!(executor instanceof HttpCommandExecutor)) {
+            throw new WebsiteWorkflowException("DevTools commands need an HttpCommandExecutor");
+        }
+        URL server = ((HttpCommandExecutor) executor).getAddressOfRemoteServer();
+
+        try {
+            URL url = new URL(server.toExternalForm().replaceAll("/$", "") + "/session/" + remoteDriver.getSessionId() + sessionPath);
+            HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            conn.setRequestMethod(method);
+            conn.setConnectTimeout(10000);
+            conn.setReadTimeout(60000);
+            if (body != null) {
+                conn.setDoOutput(true);
+                conn.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+                try (OutputStream out = conn.getOutputStream()) {
+                    out.write(json.toJson(body).getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            int status = conn.getResponseCode();
+            InputStream in = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+            Map<String, Object> response;
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                response = json.toType(reader, Json.MAP_TYPE);
+            }
+            Object value = response.get("value");
+            if (status >= 400) {
+                Object message = value instanceof Map ? ((Map<String, Object>) value).get("message") : value;
+                throw new WebDriverException(command + " failed: " + message);
+            }
+            return value instanceof Map ? (Map<String, Object>) value : Collections.emptyMap();
+        } catch (IOException ex) {
+            throw new WebDriverException(command + " failed: " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -1,39 +1,175 @@
 package de.swatchy2dot0.base;
 
+import de.swatchy2dot0.fetch.FetchResponse;
+import de.swatchy2dot0.fetch.HttpFetcher;
+import de.swatchy2dot0.metrics.MetricsRegistry;
+import de.swatchy2dot0.proxy.CachingProxy;
 import io.github.bonigarcia.wdm.WebDriverManager;
 import org.apache.commons.lang3.StringUtils;
 import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
 import org.openqa.selenium.PageLoadStrategy;
 import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
 import org.openqa.selenium.chrome.ChromeDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+import org.openqa.selenium.logging.LoggingPreferences;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 
 public class ChromeDriverPool {
 
     private final static Logger logger = LoggerFactory.getLogger(ChromeDriverPool.class);
 
-    private static ChromeDriverPool instance;
+    private static final long READY_TIMEOUT_MILLIS = 10000L;
 
-    private final Map<String, WebDriver> drivers = new HashMap<String, WebDriver>();
+    private static final long READY_POLL_MILLIS = 50L;
 
-    private final ReentrantLock lock = new ReentrantLock();
+    private static final Json json = new Json();
+
+    /**
+     * fields of {@code Network.getAllCookies} that {@code Network.setCookies} accepts
+     */
+    private static final String[] COOKIE_PARAMS = {"name", "value", "domain", "path", "secure", "httpOnly", "sameSite", "expires"};
+
+    private static volatile ChromeDriverPool instance;
+
+    private static volatile boolean chromeDriverBinaryReady = false;
+
+    /**
+     * one creation future per driver context, so a cached lookup never waits for another context's Chrome startup
+     */
+    private final Map<String, CompletableFuture<WebDriver>> drivers = new ConcurrentHashMap<>();
 
     private final boolean headless = true;
 
+    /**
+     * number of drivers that are started ahead of time and kept idle
+     */
+    private final int minSize;
+
+    /**
+     * maximum number of drivers (context bound, leased and idle) alive at the same time; each driver is a Chrome
+     * instance of its own unless browser contexts are shared
+     */
+    private final int maxSize;
+
+    /**
+     * one permit per driver in use; fair, so waiting threads are served in arrival order
+     */
+    private final Semaphore permits;
+
+    private final BlockingDeque<WebDriver> idleDrivers = new LinkedBlockingDeque<>();
+
+    private final AtomicInteger driverCount = new AtomicInteger();
+
+    private final Map<WebDriver, DriverLease> leases = new ConcurrentHashMap<>();
+
+    private final CookieStore cookieStore = new CookieStore(new File("."));
+
+    private final Map<WebDriver, DriverHealth> healthByDriver = new ConcurrentHashMap<>();
+
+    /**
+     * host of the last page opened per driver context, dropped with the driver of the context
+     */
+    private final Map<String, String> currentHosts = new ConcurrentHashMap<>();
+
+    private volatile long maxNavigationsPerDriver = 500L;
+
+    private volatile long maxErrorsPerDriver = 20L;
+
+    private volatile long maxJsHeapBytes = 512L * 1024L * 1024L;
+
+    private volatile long maxDriverAgeMillis = TimeUnit.HOURS.toMillis(2);
+
+    /**
+     * the JS heap is sampled on every n-th navigation of a driver
+     */
+    private volatile int memorySampleInterval = 10;
+
+    private final ScheduledExecutorService housekeeping = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ChromeDriverPool-housekeeping");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile long acquireTimeoutMillis = TimeUnit.MINUTES.toMillis(5);
+
+    private volatile long leaseTimeoutMillis = TimeUnit.MINUTES.toMillis(30);
+
+    private final Map<String, BlockingRules> blockingRules = new ConcurrentHashMap<>();
+
+    private volatile BlockingRules defaultBlockingRules = new BlockingRules();
+
+    /**
+     * set once any rules were configured; Chrome instances started afterwards log network events for the statistics
+     */
+    private volatile boolean blockingConfigured = false;
+
+    private final Map<String, BlockingStatistics> blockingStatistics = new ConcurrentHashMap<>();
+
+    private final Set<WebDriver> networkLoggingDrivers = ConcurrentHashMap.newKeySet();
+
+    private volatile CachingProxy cachingProxy;
+
+    private volatile MetricsRegistry metrics = MetricsRegistry.getDefault();
+
+    private volatile int browserContextsPerChrome = getIntEnv("browserContextsPerChrome", 1);
+
+    private final List<SharedChrome> sharedChromes = new ArrayList<>();
+
+    /**
+     * Chromes being started, guarded by {@link #sharedChromes}
+     */
+    private final List<PendingChrome> pendingChromes = new ArrayList<>();
+
+    private final Map<WebDriver, SharedChrome> sharedChromeByDriver = new ConcurrentHashMap<>();
+
+    private volatile DriverFactory driverFactory;
+
+    public ChromeDriverPool() {
+        this(getIntEnv("poolMinSize", 0), getIntEnv("poolMaxSize", Math.max(2, Runtime.getRuntime().availableProcessors())));
+    }
+
+    public ChromeDriverPool(int minSize, int maxSize) {
+        super();
+        if (maxSize < 1 || minSize < 0 || minSize > maxSize) {
+            throw new IllegalArgumentException("invalid pool size min=" + minSize + ", max=" + maxSize);
+        }
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.permits = new Semaphore(maxSize, true);
+        housekeeping.scheduleWithFixedDelay(this::reclaimExpiredLeases, 1L, 1L, TimeUnit.SECONDS);
+        if (minSize > 0) {
+            prewarm();
+        }
+    }
+
     public static ChromeDriverPool getInstance() {
         if (instance == null) {
-            instance = new ChromeDriverPool();
-            logger.debug("ChromeDriverPool created");
+            synchronized (ChromeDriverPool.class) {
+                if (instance == null) {
+                    instance = new ChromeDriverPool();
+                    logger.debug("ChromeDriverPool created");
+                }
+            }
         }
         return instance;
     }
@@ -44,18 +180,15 @@ public class ChromeDriverPool {
         return s.hasNext() ? s.next() : "";
     }
 
+    /**
+     * Fetches a page with a plain HTTP request, see {@link HttpFetcher}.
+     */
     public static String getHTML(String urlToRead) throws Exception {
-        StringBuilder result = new StringBuilder();
-        URL url = new URL(urlToRead);
-        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-        conn.setRequestMethod("GET");
-        BufferedReader rd = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-        String line;
-        while ((line = rd.readLine()) != null) {
-            result.append(line);
+        FetchResponse response = HttpFetcher.getDefault().fetch(urlToRead);
+        if (response.getStatus() >= 400) {
+            throw new IOException("Server returned HTTP response code: " + response.getStatus() + " for URL: " + urlToRead);
         }
-        rd.close();
-        return result.toString();
+        return response.getText();
     }
 
     public WebDriver driver() throws IOException {
@@ -71,66 +204,906 @@ public class ChromeDriverPool {
         RuntimeContext runtimeContext = RuntimeContext.getCurrent();
         String driverContext = runtimeContext.peekDriverContext();
 
-        lock.lock();
+        CompletableFuture<WebDriver> existing = drivers.get(driverContext);
+        if (existing != null) {
+            return awaitDriver(existing);
+        }
+
+        CompletableFuture<WebDriver> creation = new CompletableFuture<>();
+        existing = drivers.putIfAbsent(driverContext, creation);
+        if (existing != null) {
+            return awaitDriver(existing);
+        }
+
         try {
-            WebDriver driver = drivers.get(driverContext);
-            if (driver == null) {
-
-                WebDriverManager.chromedriver().setup();
-
-                System.setProperty("user.country", "DE");
-                System.setProperty("user.language", "de");
-                ChromeOptions options = new ChromeOptions();
-                options.addArguments("window-size=1200x1000");
-                options.addArguments("--lang=de-DE");
-                System.setProperty("LANG", "de_DE");
-                System.setProperty("LANGUAGE", "de_DE");
-                Map<String, Object> prefs = new HashMap<String, Object>();
-                if (StringUtils.isNotBlank(downloadPath)) {
-                    prefs.put("profile.default_content_settings.popups", 0);
-                    prefs.put("download.default_directory", downloadPath);
+            long timeoutMillis = acquireTimeoutMillis;
+            long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+            acquirePermit(timeoutMillis);
+            WebDriver driver;
+            try {
+                if (withImages && StringUtils.isBlank(downloadPath)) {
+                    driver = takeIdleOrCreateDriver(deadlineNanos, timeoutMillis);
+                } else {
+                    driver = createDriver(withImages, downloadPath, deadlineNanos, timeoutMillis);
                 }
-                prefs.put("intl.accept_languages", "de-DE");
-                options.setExperimentalOption("prefs", prefs);
-                options.setPageLoadStrategy(PageLoadStrategy.EAGER);
-                options.addArguments("--whitelisted-ips");
-                System.setProperty("webdriver.chrome.whitelistedIps", "");
-
-                if (!withImages) {
-                    options.addArguments("--blink-settings=imagesEnabled=false");
+            } catch (RuntimeException ex) {
+                permits.release();
+                throw ex;
+            }
+
+            logger.debug("ChromeDriver bound to driver context '{}'", driverContext);
+
+            try {
+                loadCookies(driver, driverContext);
+                applyBlockingRules(driver, driverContext);
+            } catch (RuntimeException ex) {
+                quitDriver(driver);
+                permits.release();
+                throw ex;
+            }
+
+            creation.complete(driver);
+            return driver;
+        } catch (RuntimeException ex) {
+            if (drivers.remove(driverContext, creation)) {
+                currentHosts.remove(driverContext);
+            }
+            creation.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Borrows a driver that is not bound to any driver context, waiting at most the configured acquire timeout.
+     */
+    public DriverLease lease() {
+        return lease(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a driver that is not bound to any driver context. Pre-warmed drivers are handed out first; a new
+     * Chrome is only started while the pool is below its maximum size.
+     */
+    public DriverLease lease(long timeout, TimeUnit unit) {
+        long timeoutMillis = unit.toMillis(timeout);
+        long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+        acquirePermit(timeoutMillis);
+        try {
+            WebDriver driver = takeIdleOrCreateDriver(deadlineNanos, timeoutMillis);
+            DriverLease lease = new DriverLease(this, driver, leaseTimeoutMillis);
+            leases.put(driver, lease);
+            return lease;
+        } catch (RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    /**
+     * Returns a leased driver to the pool. Before it is reused, the cookies of all sites and the storage of every
+     * origin the lessee navigated to are cleared and the driver is reset to a blank page. A driver that cannot be
+     * reset is quit.
+     */
+    public void release(DriverLease lease) {
+        if (!lease.markReturned()) {
+            return;
+        }
+        WebDriver driver = lease.getDriver();
+        leases.remove(driver);
+        DriverHealth health = healthByDriver.get(driver);
+        if (health != null && health.isRetiring()) {
+            logger.info("leased ChromeDriver retired: {}", health.getRetireReason());
+            quitDriver(driver);
+            permits.release();
+            prewarm();
+            return;
+        }
+        try {
+            clearBrowsingData(driver);
+            driver.get("about:blank");
+            ChromeDevTools.execute(driver, "Page.resetNavigationHistory");
+            idleDrivers.offerFirst(driver);
+        } catch (Exception ex) {
+            logger.warn("returned ChromeDriver is broken and will be quit: {}", ex.getMessage());
+            quitDriver(driver);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Clears the cookies of all domains, WebDriver only deletes those of the current document, and the storage of
+     * the origins in the navigation history of the page.
+     */
+    @SuppressWarnings("unchecked")
+    private static void clearBrowsingData(WebDriver driver) {
+        ChromeDevTools.execute(driver, "Network.clearBrowserCookies");
+        Object entries = ChromeDevTools.execute(driver, "Page.getNavigationHistory").get("entries");
+        Set<String> origins = new LinkedHashSet<>();
+        if (entries instanceof List) {
+            for (Map<String, Object> entry : (List<Map<String, Object>>) entries) {
+                String origin = originOf(entry.get("url"));
+                if (origin != null) {
+                    origins.add(origin);
                 }
+            }
+        }
+        for (String origin : origins) {
+            Map<String, Object> params = new HashMap<>();
+            params.put("origin", origin);
+            params.put("storageTypes", "all");
+            ChromeDevTools.execute(driver, "Storage.clearDataForOrigin", params);
+        }
+    }
+
+    private static String originOf(Object url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            URI uri = new URI(url.toString());
+            if (!"http".equals(uri.getScheme()) && !"https".equals(uri.getScheme()) || uri.getHost() == null) {
+                return null;
+            }
+            return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() == -1 ? "" : ":" + uri.getPort());
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+    }
 
-                // if blocked, pinterest login will no longer work options.addArguments("--host-resolver-rules=MAP accounts.google.com 127.0.0.1");
-                if (isHeadless()) {
-                    options.addArguments("--headless"); // only if you are ACTUALLY running headless
-                    options.addArguments("--disable-dev-shm-usage"); //https://stackoverflow.com/a/50725918/1689770
-                    options.addArguments("--no-sandbox"); //https://stackoverflow.com/a/50725918/1689770
-                    options.addArguments("--log-level=3");
-                    // ChromeDriver is just AWFUL because every version or two it breaks unless you pass cryptic arguments
-                    //AGRESSIVE: options.setPageLoadStrategy(PageLoadStrategy.NONE); // https://www.skptricks.com/2018/08/timed-out-receiving-message-from-renderer-selenium.html
-                    options.addArguments("start-maximized"); // https://stackoverflow.com/a/26283818/1689770
-                    options.addArguments("enable-automation"); // https://stackoverflow.com/a/43840128/1689770
-                    options.addArguments("--disable-infobars"); //https://stackoverflow.com/a/43840128/1689770
-                    options.addArguments("--disable-browser-side-navigation"); //https://stackoverflow.com/a/49123152/1689770
-                    options.addArguments("--disable-gpu"); //https://stackoverflow.com/questions/51959986/how-to-solve-selenium-chromedriver-timed-out-receiving-message-from-renderer-exc
-                    //System.setProperty("webdriver.chrome.logfile", "./chromedriver.log");
-                    //System.setProperty("webdriver.chrome.verboseLogging", "true");
-                    logger.debug("headless");
+    /**
+     * Starts drivers in the background until {@code minSize} Chrome instances are alive.
+     */
+    public void prewarm() {
+        housekeeping.execute(() -> {
+            while (driverCount.get() < minSize) {
+                if (!reserveDriverSlot()) {
+                    return;
+                }
+                try {
+                    idleDrivers.offerLast(newChromeDriver(true, ""));
+                } catch (Exception ex) {
+                    driverCount.decrementAndGet();
+                    logger.warn("pre-warming ChromeDriver failed: {}", ex.getMessage());
+                    return;
                 }
+            }
+        });
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public int getIdleCount() {
+        return idleDrivers.size();
+    }
+
+    public int getDriverCount() {
+        return driverCount.get();
+    }
+
+    public void setAcquireTimeout(long timeout, TimeUnit unit) {
+        this.acquireTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Leases held longer than this are reclaimed, a value of 0 disables reclaiming.
+     */
+    public void setLeaseTimeout(long timeout, TimeUnit unit) {
+        this.leaseTimeoutMillis = unit.toMillis(timeout);
+    }
+
+    /**
+     * Quits every driver of this pool, context bound, leased and idle.
+     */
+    public void shutdown() {
+        for (String driverContext : new ArrayList<>(drivers.keySet())) {
+            closeDriver(driverContext);
+        }
+        for (DriverLease lease : new ArrayList<>(leases.values())) {
+            if (lease.markReturned()) {
+                leases.remove(lease.getDriver());
+                quitDriver(lease.getDriver());
+            }
+        }
+        List<WebDriver> idle = new ArrayList<>();
+        idleDrivers.drainTo(idle);
+        idle.forEach(this::quitDriver);
+        List<SharedChrome> remaining;
+        synchronized (sharedChromes) {
+            remaining = new ArrayList<>(sharedChromes);
+            sharedChromes.clear();
+            pendingChromes.clear();
+        }
+        remaining.forEach(SharedChrome::quit);
+        housekeeping.shutdownNow();
+    }
+
+    /**
+     * Records a successful page load of the given driver and retires the driver once it crosses a threshold.
+     */
+    public void recordNavigation(WebDriver driver) {
+        DriverHealth health = healthByDriver.get(driver);
+        if (health == null) {
+            return;
+        }
+        long navigations = health.recordNavigation();
+        int sampleInterval = memorySampleInterval;
+        if (sampleInterval > 0 && navigations % sampleInterval == 0) {
+            sampleMemory(driver, health);
+        }
+        checkHealth(health);
+        if (networkLoggingDrivers.contains(driver)) {
+            collectBlockingStatistics(driver, RuntimeContext.getCurrent().peekDriverContext());
+        }
+    }
+
+    /**
+     * Rules for every driver context without rules of its own. Statistics are only collected for Chrome instances
+     * started after the first rules were set, so configure the rules before the first driver is requested.
+     */
+    public void setBlockingRules(BlockingRules rules) {
+        defaultBlockingRules = rules;
+        blockingConfigured = true;
+        for (Map.Entry<String, CompletableFuture<WebDriver>> driver : drivers.entrySet()) {
+            if (!blockingRules.containsKey(driver.getKey())) {
+                driver.getValue().thenAccept(created -> applyBlockingRules(created, driver.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Blocks requests of the drivers of one driver context at the network layer, also of drivers that replace it
+     * after recycling.
+     */
+    public void setBlockingRules(String driverContext, BlockingRules rules) {
+        blockingRules.put(driverContext, rules);
+        blockingConfigured = true;
+        CompletableFuture<WebDriver> driver = drivers.get(driverContext);
+        if (driver != null) {
+            driver.thenAccept(created -> applyBlockingRules(created, driverContext));
+        }
+    }
+
+    /**
+     * Chrome instances started afterwards send all requests through the proxy, so static assets are downloaded once
+     * for all drivers and survive recycling. Pass null to start new drivers without proxy.
+     */
+    public void setCachingProxy(CachingProxy cachingProxy) {
+        this.cachingProxy = cachingProxy;
+    }
+
+    public CachingProxy getCachingProxy() {
+        return cachingProxy;
+    }
+
+    /**
+     * With a value above 1, drivers started afterwards are isolated browser contexts (own cookies, storage and cache)
+     * inside a shared Chrome process instead of a Chrome each, which saves the memory of the browser process and its
+     * GPU and utility helpers. A Chrome crash takes all its contexts down, the pool then replaces them like any other
+     * broken driver. The maximum pool size still bounds the number of drivers.
+     */
+    public void setBrowserContextsPerChrome(int browserContextsPerChrome) {
+        if (browserContextsPerChrome < 1) {
+            throw new IllegalArgumentException("invalid number of browser contexts per Chrome " + browserContextsPerChrome);
+        }
+        this.browserContextsPerChrome = browserContextsPerChrome;
+    }
+
+    public int getBrowserContextsPerChrome() {
+        return browserContextsPerChrome;
+    }
+
+    /**
+     * Registry for the latencies of driver creation and recycling, {@link MetricsRegistry#getDefault()} by default.
+     */
+    public void setMetrics(MetricsRegistry metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Starts the drivers of this pool with the given factory instead of a local Chrome; {@code null} restores the
+     * default. Chrome options like the caching proxy and shared browser contexts only apply to the default.
+     */
+    public void setDriverFactory(DriverFactory driverFactory) {
+        this.driverFactory = driverFactory;
+    }
+
+    public BlockingStatistics getBlockingStatistics(String driverContext) {
+        return blockingStatistics.computeIfAbsent(driverContext, key -> new BlockingStatistics());
+    }
+
+    /**
+     * Records a failed WebDriver call of the given driver and retires the driver once it crosses a threshold.
+     */
+    public void recordError(WebDriver driver) {
+        DriverHealth health = healthByDriver.get(driver);
+        if (health == null) {
+            return;
+        }
+        health.recordError();
+        checkHealth(health);
+    }
+
+    public Optional<DriverHealth> getHealth(WebDriver driver) {
+        return Optional.ofNullable(healthByDriver.get(driver));
+    }
 
-                driver = new ChromeDriver(options);
+    /**
+     * Swaps the driver of the current driver context for a fresh one if it has been retired. Cookies of all domains
+     * are carried over in memory, the cookie files are left alone. Must only be called between two page loads, e.g.
+     * before a navigation, because the page state is lost.
+     */
+    public void recycleIfDue() {
 
-                drivers.put(driverContext, driver);
+        RuntimeContext runtimeContext = RuntimeContext.getCurrent();
+        String driverContext = runtimeContext.peekDriverContext();
 
-                logger.debug("new ChromeDriver created for driver context '{}'", driverContext);
+        CompletableFuture<WebDriver> current = drivers.get(driverContext);
+        if (current == null || !current.isDone() || current.isCompletedExceptionally()) {
+            return;
+        }
+        WebDriver retired = current.join();
+        DriverHealth health = healthByDriver.get(retired);
+        if (health == null || !health.isRetiring()) {
+            return;
+        }
+        CompletableFuture<WebDriver> replacement = health.takeReadyReplacement();
+        if (replacement == null) {
+            // still starting in the background, keep using the old driver meanwhile
+            return;
+        }
+        WebDriver fresh = replacement.isCompletedExceptionally() ? null : replacement.join();
+        if (fresh != null) {
+            // the permit of the driver context now covers the replacement
+            permits.release();
+        }
+        long startNanos = System.nanoTime();
 
-                sleep(3000L);
+        List<Map<String, Object>> cookies = readAllCookies(retired, driverContext);
+        // quit before creating a driver, the retired one must not hold the slot a new driver is waiting for
+        quitDriver(retired);
 
-                loadCookies();
+        try {
+            if (fresh == null) {
+                long timeoutMillis = acquireTimeoutMillis;
+                long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+                fresh = createDriver(health.isWithImages(), health.getDownloadPath(), deadlineNanos, timeoutMillis);
+            }
+        } catch (RuntimeException ex) {
+            if (drivers.remove(driverContext, current)) {
+                currentHosts.remove(driverContext);
+            }
+            permits.release();
+            throw ex;
+        }
+        try {
+            if (cookies == null) {
+                loadCookies(fresh, driverContext);
+            } else if (!cookies.isEmpty()) {
+                setCookies(fresh, cookies);
+            }
+            applyBlockingRules(fresh, driverContext);
+        } catch (RuntimeException ex) {
+            quitDriver(fresh);
+            if (drivers.remove(driverContext, current)) {
+                currentHosts.remove(driverContext);
             }
+            permits.release();
+            throw ex;
+        }
+        drivers.replace(driverContext, current, CompletableFuture.completedFuture(fresh));
+        metrics.recordLatency(MetricsRegistry.DRIVER_RECYCLING, driverContext, "", System.nanoTime() - startNanos);
+        logger.info("ChromeDriver of driver context '{}' recycled: {}", driverContext, health.getRetireReason());
+    }
+
+    /**
+     * A driver is retired after {@code maxNavigations} page loads, {@code maxErrors} failed calls, a JS heap above
+     * {@code maxJsHeapMb} or {@code maxAge}; a value of 0 disables the respective threshold.
+     */
+    public void setRecyclingThresholds(long maxNavigations, long maxErrors, long maxJsHeapMb, long maxAge, TimeUnit unit) {
+        this.maxNavigationsPerDriver = maxNavigations;
+        this.maxErrorsPerDriver = maxErrors;
+        this.maxJsHeapBytes = maxJsHeapMb * 1024L * 1024L;
+        this.maxDriverAgeMillis = unit.toMillis(maxAge);
+    }
+
+    public void setMemorySampleInterval(int memorySampleInterval) {
+        this.memorySampleInterval = memorySampleInterval;
+    }
+
+    private void applyBlockingRules(WebDriver driver, String driverContext) {
+        if (!blockingConfigured) {
+            return;
+        }
+        BlockingRules rules = blockingRules.getOrDefault(driverContext, defaultBlockingRules);
+        try {
+            Map<String, Object> params = new HashMap<>();
+            params.put("urls", rules.getUrlPatterns());
+            ChromeDevTools.execute(driver, "Network.enable");
+            ChromeDevTools.execute(driver, "Network.setBlockedURLs", params);
+        } catch (WebDriverException ex) {
+            logger.warn("blocking rules of driver context '{}' could not be applied: {}", driverContext, ex.getMessage());
+        }
+    }
+
+    /**
+     * Counts blocked requests and the sizes of loaded ones from the performance log since the last call.
+     */
+    @SuppressWarnings("unchecked")
+    private void collectBlockingStatistics(WebDriver driver, String driverContext) {
+        BlockingStatistics statistics = getBlockingStatistics(driverContext);
+        try {
+            for (LogEntry entry : driver.manage().logs().get(LogType.PERFORMANCE)) {
+                String message = entry.getMessage();
+                if (!message.contains("Network.loadingF") && !message.contains("Network.responseReceived\"")) {
+                    continue;
+                }
+                Map<String, Object> wrapper = json.toType(message, Json.MAP_TYPE);
+                Map<String, Object> event = (Map<String, Object>) wrapper.get("message");
+                Map<String, Object> params = event == null ? null : (Map<String, Object>) event.get("params");
+                if (params == null) {
+                    continue;
+                }
+                String requestId = String.valueOf(params.get("requestId"));
+                switch (String.valueOf(event.get("method"))) {
+                    case "Network.responseReceived":
+                        statistics.recordResponse(requestId, (String) params.get("type"));
+                        break;
+                    case "Network.loadingFinished":
+                        Object bytes = params.get("encodedDataLength");
+                        statistics.recordLoaded(requestId, bytes instanceof Number ? ((Number) bytes).longValue() : 0L);
+                        break;
+                    case "Network.loadingFailed":
+                        if (params.get("blockedReason") != null) {
+                            statistics.recordBlocked((String) params.get("type"));
+                        }
+                        statistics.forget(requestId);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (Exception ex) {
+            logger.debug("performance log of driver context '{}' could not be read: {}", driverContext, ex.getMessage());
+        }
+    }
+
+    private void sampleMemory(WebDriver driver, DriverHealth health) {
+        try {
+            Object heap = ((JavascriptExecutor) driver).executeScript(
+                    "return window.performance && performance.memory ? performance.memory.usedJSHeapSize : -1");
+            if (heap instanceof Number) {
+                health.setJsHeapBytes(((Number) heap).longValue());
+            }
+        } catch (WebDriverException ex) {
+            logger.debug("sampling JS heap failed: {}", ex.getMessage());
+        }
+    }
+
+    private void checkHealth(DriverHealth health) {
+        String reason = null;
+        if (maxNavigationsPerDriver > 0 && health.getNavigations() >= maxNavigationsPerDriver) {
+            reason = health.getNavigations() + " navigations";
+        } else if (maxErrorsPerDriver > 0 && health.getErrors() >= maxErrorsPerDriver) {
+            reason = health.getErrors() + " errors";
+        } else if (maxJsHeapBytes > 0 && health.getJsHeapBytes() >= maxJsHeapBytes) {
+            reason = (health.getJsHeapBytes() / 1024L / 1024L) + " MB JS heap";
+        } else if (maxDriverAgeMillis > 0 && health.getAgeMillis() >= maxDriverAgeMillis) {
+            reason = TimeUnit.MILLISECONDS.toMinutes(health.getAgeMillis()) + " minutes old";
+        }
+        if (reason != null && health.markForRetirement(reason)) {
+            logger.info("ChromeDriver retired after {}, preparing replacement", reason);
+            metrics.increment("driver_retired", "", "");
+            CompletableFuture<WebDriver> replacement = new CompletableFuture<>();
+            health.setReplacement(replacement);
+            housekeeping.execute(() -> {
+                // a replacement holds a permit until it is swapped in, so waiting callers time out instead of
+                // waiting for a slot the replacement occupies
+                if (!permits.tryAcquire()) {
+                    replacement.complete(null);
+                    return;
+                }
+                if (!reserveDriverSlot()) {
+                    permits.release();
+                    replacement.complete(null);
+                    return;
+                }
+                try {
+                    replacement.complete(newChromeDriver(health.isWithImages(), health.getDownloadPath()));
+                } catch (Exception ex) {
+                    driverCount.decrementAndGet();
+                    permits.release();
+                    logger.warn("starting replacement ChromeDriver failed: {}", ex.getMessage());
+                    replacement.complete(null);
+                }
+            });
+        }
+    }
+
+    private WebDriver awaitDriver(CompletableFuture<WebDriver> creation) {
+        try {
+            return creation.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private void acquirePermit(long timeoutMillis) {
+        try {
+            if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw noDriverAvailable(timeoutMillis);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WebsiteWorkflowException("interrupted while waiting for a ChromeDriver");
+        }
+    }
+
+    private WebsiteWorkflowException noDriverAvailable(long timeoutMillis) {
+        return new WebsiteWorkflowException("no ChromeDriver available within " + timeoutMillis + " ms (max pool size " + maxSize + ")");
+    }
+
+    /**
+     * Must only be called while holding a permit: either an idle driver exists, a slot is free or another driver is
+     * currently being quit or started and becomes idle.
+     */
+    private WebDriver takeIdleOrCreateDriver(long deadlineNanos, long timeoutMillis) {
+        while (true) {
+            WebDriver driver = idleDrivers.pollFirst();
+            if (driver != null) {
+                return driver;
+            }
+            if (reserveDriverSlot()) {
+                try {
+                    return newChromeDriver(true, "");
+                } catch (RuntimeException ex) {
+                    driverCount.decrementAndGet();
+                    throw ex;
+                }
+            }
+            driver = pollIdleDriver(true, deadlineNanos, timeoutMillis);
+            if (driver != null) {
+                return driver;
+            }
+        }
+    }
+
+    /**
+     * Starts a driver with other options than the pre-warmed ones; idle drivers are quit to free a slot for it.
+     */
+    private WebDriver createDriver(boolean withImages, String downloadPath, long deadlineNanos, long timeoutMillis) {
+        while (!reserveDriverSlot()) {
+            WebDriver idleDriver = idleDrivers.pollLast();
+            if (idleDriver == null) {
+                idleDriver = pollIdleDriver(false, deadlineNanos, timeoutMillis);
+            }
+            if (idleDriver != null) {
+                quitDriver(idleDriver);
+            }
+        }
+        try {
+            return newChromeDriver(withImages, downloadPath);
+        } catch (RuntimeException ex) {
+            driverCount.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    /**
+     * Waits briefly for an idle driver; slots freed by quitting drivers are not signalled, so callers poll again.
+     */
+    private WebDriver pollIdleDriver(boolean first, long deadlineNanos, long timeoutMillis) {
+        long remainingNanos = deadlineNanos - System.nanoTime();
+        if (remainingNanos <= 0L) {
+            throw noDriverAvailable(timeoutMillis);
+        }
+        long waitNanos = Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(100L));
+        try {
+            return first ? idleDrivers.pollFirst(waitNanos, TimeUnit.NANOSECONDS)
+                    : idleDrivers.pollLast(waitNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WebsiteWorkflowException("interrupted while waiting for a ChromeDriver");
+        }
+    }
+
+    private boolean reserveDriverSlot() {
+        while (true) {
+            int count = driverCount.get();
+            if (count >= maxSize) {
+                return false;
+            }
+            if (driverCount.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static void setupChromeDriverBinary() {
+        if (!chromeDriverBinaryReady) {
+            synchronized (ChromeDriverPool.class) {
+                if (!chromeDriverBinaryReady) {
+                    WebDriverManager.chromedriver().setup();
+                    chromeDriverBinaryReady = true;
+                }
+            }
+        }
+    }
+
+    private WebDriver newChromeDriver(boolean withImages, String downloadPath) {
+
+        long startNanos = System.nanoTime();
+        boolean networkLogging = blockingConfigured;
+        DriverFactory factory = driverFactory;
+        WebDriver driver;
+        if (factory != null) {
+            driver = factory.create(withImages, downloadPath);
+        } else if (browserContextsPerChrome > 1) {
+            setupChromeDriverBinary();
+            driver = newBrowserContextDriver(withImages, downloadPath, networkLogging);
+        } else {
+            setupChromeDriverBinary();
+            ChromeOptions options = chromeOptions(withImages, downloadPath);
+            if (networkLogging) {
+                enableNetworkLogging(options);
+            }
+            driver = new ChromeDriver(options);
+        }
+
+        logger.debug("new ChromeDriver created ({} of max {})", driverCount.get(), maxSize);
+
+        awaitReady(driver);
+        // drivers are started before they are bound, so the creation is not tagged with a driver context
+        metrics.recordLatency(MetricsRegistry.DRIVER_CREATION, "", "", System.nanoTime() - startNanos);
+
+        healthByDriver.put(driver, new DriverHealth(withImages, downloadPath));
+        if (networkLogging) {
+            networkLoggingDrivers.add(driver);
+        }
+
+        return driver;
+    }
+
+    /**
+     * Opens a browser context in a shared Chrome with a free slot, starting another Chrome if all are full. Images
+     * can only be switched off per process, so drivers with and without images never share a Chrome.
+     */
+    private WebDriver newBrowserContextDriver(boolean withImages, String downloadPath, boolean networkLogging) {
+        SharedChrome sharedChrome = reserveSharedChrome(withImages);
+        ChromeOptions sessionOptions = new ChromeOptions();
+        sessionOptions.setPageLoadStrategy(PageLoadStrategy.EAGER);
+        if (networkLogging) {
+            enableNetworkLogging(sessionOptions);
+        }
+        try {
+            WebDriver driver = sharedChrome.openContext(sessionOptions, downloadPath);
+            sharedChromeByDriver.put(driver, sharedChrome);
             return driver;
+        } catch (RuntimeException ex) {
+            releaseSharedChrome(sharedChrome);
+            throw ex;
+        }
+    }
+
+    /**
+     * Reserves a slot in a running or starting Chrome. A new Chrome is started outside the lock, so other contexts
+     * can still be opened meanwhile; callers that reserved a slot of a starting Chrome wait for its start.
+     */
+    private SharedChrome reserveSharedChrome(boolean withImages) {
+        PendingChrome pending = null;
+        boolean starter = false;
+        synchronized (sharedChromes) {
+            for (SharedChrome sharedChrome : sharedChromes) {
+                if (sharedChrome.isWithImages() == withImages && sharedChrome.reserve()) {
+                    return sharedChrome;
+                }
+            }
+            for (PendingChrome candidate : pendingChromes) {
+                if (candidate.withImages == withImages && candidate.reserved < candidate.capacity) {
+                    pending = candidate;
+                    break;
+                }
+            }
+            if (pending == null) {
+                pending = new PendingChrome(withImages, browserContextsPerChrome);
+                pendingChromes.add(pending);
+                starter = true;
+            }
+            pending.reserved++;
+        }
+        if (starter) {
+            startSharedChrome(pending);
+        }
+        try {
+            return pending.started.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    private void startSharedChrome(PendingChrome pending) {
+        SharedChrome sharedChrome;
+        try {
+            sharedChrome = SharedChrome.start(chromeOptions(pending.withImages, ""), pending.withImages, pending.capacity);
+        } catch (RuntimeException | Error ex) {
+            synchronized (sharedChromes) {
+                pendingChromes.remove(pending);
+            }
+            pending.started.completeExceptionally(ex);
+            return;
+        }
+        boolean added;
+        synchronized (sharedChromes) {
+            // false if the pool was shut down meanwhile
+            added = pendingChromes.remove(pending);
+            if (added) {
+                for (int i = 0; i < pending.reserved; i++) {
+                    sharedChrome.reserve();
+                }
+                sharedChromes.add(sharedChrome);
+            }
+        }
+        if (added) {
+            pending.started.complete(sharedChrome);
+        } else {
+            sharedChrome.quit();
+            pending.started.completeExceptionally(new WebDriverException("driver pool was shut down"));
+        }
+    }
+
+    /**
+     * Gives a browser context slot back and quits the shared Chrome once its last context is gone.
+     */
+    private void releaseSharedChrome(SharedChrome sharedChrome) {
+        boolean unused;
+        synchronized (sharedChromes) {
+            sharedChrome.unreserve();
+            unused = sharedChrome.isUnused();
+            if (unused) {
+                sharedChromes.remove(sharedChrome);
+            }
+        }
+        if (unused) {
+            sharedChrome.quit();
+        }
+    }
+
+    private void enableNetworkLogging(ChromeOptions options) {
+        // network events in the performance log are the only way to see blocked requests without DevTools events
+        LoggingPreferences loggingPreferences = new LoggingPreferences();
+        loggingPreferences.enable(LogType.PERFORMANCE, Level.ALL);
+        options.setCapability("goog:loggingPrefs", loggingPreferences);
+        Map<String, Object> performanceLogging = new HashMap<>();
+        performanceLogging.put("enableNetwork", true);
+        performanceLogging.put("enablePage", false);
+        options.setExperimentalOption("perfLoggingPrefs", performanceLogging);
+    }
+
+    private ChromeOptions chromeOptions(boolean withImages, String downloadPath) {
+
+        System.setProperty("user.country", "DE");
+        System.setProperty("user.language", "de");
+        ChromeOptions options = new ChromeOptions();
+        options.addArguments("window-size=1200x1000");
+        options.addArguments("--lang=de-DE");
+        System.setProperty("LANG", "de_DE");
+        System.setProperty("LANGUAGE", "de_DE");
+        Map<String, Object> prefs = new HashMap<String, Object>();
+        if (StringUtils.isNotBlank(downloadPath)) {
+            prefs.put("profile.default_content_settings.popups", 0);
+            prefs.put("download.default_directory", downloadPath);
+        }
+        prefs.put("intl.accept_languages", "de-DE");
+        options.setExperimentalOption("prefs", prefs);
+        options.setPageLoadStrategy(PageLoadStrategy.EAGER);
+        options.addArguments("--whitelisted-ips");
+        System.setProperty("webdriver.chrome.whitelistedIps", "");
+
+        if (!withImages) {
+            options.addArguments("--blink-settings=imagesEnabled=false");
+        }
+
+        CachingProxy proxy = cachingProxy;
+        if (proxy != null) {
+            options.addArguments("--proxy-server=http://" + proxy.getAddress());
+            if (proxy.isTlsInterception()) {
+                options.addArguments("--ignore-certificate-errors");
+            }
+        }
+
+        // if blocked, pinterest login will no longer work options.addArguments("--host-resolver-rules=MAP accounts.google.com 127.0.0.1");
+        if (isHeadless()) {
+            options.addArguments("--headless"); // only if you are ACTUALLY running headless
+            options.addArguments("--disable-dev-shm-usage"); //https://stackoverflow.com/a/50725918/1689770
+            options.addArguments("--no-sandbox"); //https://stackoverflow.com/a/50725918/1689770
+            options.addArguments("--log-level=3");
+            // ChromeDriver is just AWFUL because every version or two it breaks unless you pass cryptic arguments
+            //AGRESSIVE: options.setPageLoadStrategy(PageLoadStrategy.NONE); // https://www.skptricks.com/2018/08/timed-out-receiving-message-from-renderer-selenium.html
+            options.addArguments("start-maximized"); // https://stackoverflow.com/a/26283818/1689770
+            options.addArguments("enable-automation"); // https://stackoverflow.com/a/43840128/1689770
+            options.addArguments("--disable-infobars"); //https://stackoverflow.com/a/43840128/1689770
+            options.addArguments("--disable-browser-side-navigation"); //https://stackoverflow.com/a/49123152/1689770
+            options.addArguments("--disable-gpu"); //https://stackoverflow.com/questions/51959986/how-to-solve-selenium-chromedriver-timed-out-receiving-message-from-renderer-exc
+            //System.setProperty("webdriver.chrome.logfile", "./chromedriver.log");
+            //System.setProperty("webdriver.chrome.verboseLogging", "true");
+            logger.debug("headless");
+        }
+
+        return options;
+    }
+
+    /**
+     * Polls the initial page until the renderer answers, instead of sleeping a fixed time after startup.
+     */
+    private void awaitReady(WebDriver driver) {
+        if (!(driver instanceof JavascriptExecutor)) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + READY_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Object readyState = ((JavascriptExecutor) driver).executeScript("return document.readyState");
+                if ("complete".equals(readyState) || "interactive".equals(readyState)) {
+                    return;
+                }
+            } catch (WebDriverException ex) {
+                // renderer not ready yet
+            }
+            sleep(READY_POLL_MILLIS);
+        }
+        logger.warn("ChromeDriver not ready after {} ms", READY_TIMEOUT_MILLIS);
+    }
+
+    private void quitDriver(WebDriver driver) {
+        networkLoggingDrivers.remove(driver);
+        DriverHealth health = healthByDriver.remove(driver);
+        if (health != null) {
+            // an unused replacement becomes a pre-warmed idle driver and gives its permit back
+            CompletableFuture<WebDriver> replacement = health.takeReplacement();
+            if (replacement != null) {
+                replacement.thenAccept(fresh -> {
+                    if (fresh != null) {
+                        idleDrivers.offerLast(fresh);
+                        permits.release();
+                    }
+                });
+            }
+        }
+        SharedChrome sharedChrome = sharedChromeByDriver.remove(driver);
+        try {
+            if (sharedChrome != null) {
+                sharedChrome.closeContext(driver);
+                releaseSharedChrome(sharedChrome);
+            } else {
+                driver.quit();
+            }
+        } catch (Exception ex) {
+            logger.debug("quitting ChromeDriver failed: {}", ex.getMessage());
         } finally {
-            lock.unlock();
+            driverCount.decrementAndGet();
+        }
+    }
+
+    private void reclaimExpiredLeases() {
+        for (DriverLease lease : leases.values()) {
+            if (lease.isExpired() && lease.markReturned()) {
+                leases.remove(lease.getDriver());
+                logger.warn("driver lease held since {} expired, ChromeDriver is reclaimed", lease.getLeasedAtMillis());
+                quitDriver(lease.getDriver());
+                permits.release();
+            }
         }
     }
 
@@ -153,24 +1126,40 @@ public class ChromeDriverPool {
         }
     }
 
+    /**
+     * Remembers the host of the page the driver of the context opens, to tag metrics of that page.
+     */
+    void setCurrentHost(String driverContext, String host) {
+        currentHosts.put(driverContext, host);
+    }
+
+    /**
+     * @return the host of the last page opened in the context, empty if its driver has not opened one
+     */
+    String getCurrentHost(String driverContext) {
+        return currentHosts.getOrDefault(driverContext, "");
+    }
+
     public void closeDriver() {
 
         RuntimeContext runtimeContext = RuntimeContext.getCurrent();
         String driverContext = runtimeContext.peekDriverContext();
 
-        lock.lock();
-        try {
-            try {
-                WebDriver driver = drivers.get(driverContext);
+        closeDriver(driverContext);
+    }
+
+    private void closeDriver(String driverContext) {
+        currentHosts.remove(driverContext);
+        CompletableFuture<WebDriver> creation = drivers.remove(driverContext);
+        if (creation != null) {
+            // a driver still starting up is quit as soon as it is ready
+            creation.whenComplete((driver, ex) -> {
                 if (driver != null) {
-                    driver.quit();
-                    drivers.remove(driverContext);
+                    permits.release();
+                    quitDriver(driver);
                     logger.info("ChromeDriver closed");
                 }
-            } catch (Exception ex) {
-            }
-        } finally {
-            lock.unlock();
+            });
         }
     }
 
@@ -182,38 +1171,24 @@ public class ChromeDriverPool {
         return headless;
     }
 
+    private static int getIntEnv(String name, int defaultValue) {
+        Optional<String> envVar = Optional.ofNullable(System.getenv().get(name));
+        if (envVar.isPresent()) {
+            return Integer.parseInt(envVar.get());
+        }
+        return defaultValue;
+    }
+
     public void storeCookies() {
 
         RuntimeContext runtimeContext = RuntimeContext.getCurrent();
         String driverContext = runtimeContext.peekDriverContext();
 
-        // create file named Cookies to store Login Information
-        File file = new File(driverContext + "_Cookies.data");
-
-        FileOutputStream f = null;
-        ObjectOutputStream o = null;
-
         try {
-            f = new FileOutputStream(file);
-            o = new ObjectOutputStream(f);
-
-            for (Cookie ck : driver().manage().getCookies()) {
-                o.writeObject(ck);
-            }
-
+            cookieStore.update(driverContext, driver(true).manage().getCookies());
+            cookieStore.flush(driverContext);
         } catch (Exception ex) {
-            ex.printStackTrace();
-        } finally {
-            try {
-                if (o != null) {
-                    o.close();
-                }
-                if (f != null) {
-                    f.close();
-                }
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            logger.warn("storing Cookies of driver context '{}' failed: {}", driverContext, ex.getMessage());
         }
     }
 
@@ -222,84 +1197,105 @@ public class ChromeDriverPool {
         RuntimeContext runtimeContext = RuntimeContext.getCurrent();
         String driverContext = runtimeContext.peekDriverContext();
 
-        File file = new File(driverContext + "_Cookies.data");
-        if (file.exists()) {
-            file.delete();
-        }
+        cookieStore.delete(driverContext);
     }
 
     public void loadCookies() {
 
-        boolean silent = true;
-        boolean toBeDeleted = false;
-
         RuntimeContext runtimeContext = RuntimeContext.getCurrent();
         String driverContext = runtimeContext.peekDriverContext();
 
-        FileInputStream fi = null;
-        ObjectInputStream oi = null;
-        try {
-            File file = new File(driverContext + "_Cookies.data");
+        loadCookies(driver(true), driverContext);
+    }
 
-            if (file.exists()) {
+    private void loadCookies(WebDriver driver, String driverContext) {
 
-                fi = new FileInputStream(file);
+        List<Cookie> cookies = cookieStore.load(driverContext);
+        if (cookies.isEmpty()) {
+            logger.debug("no Cookies to load for driver context '{}'", driverContext);
+            return;
+        }
 
-                oi = new ObjectInputStream(fi);
+        try {
+            restoreCookies(driver, cookies);
+        } catch (WebDriverException ex) {
+            logger.warn("restoring Cookies via DevTools failed, falling back to WebDriver: {}", ex.getMessage());
+            addCookies(driver, cookies);
+        }
+        logger.debug("{} Cookies restored for driver context '{}'", cookies.size(), driverContext);
+    }
 
-                // open dummy page otherwise cookies cannot be set
-                driver().get("https://example.com/");
+    /**
+     * Injects all cookies with a single DevTools call. This works before the first navigation because the cookies
+     * are written to the browser's cookie jar instead of the current document.
+     */
+    private void restoreCookies(WebDriver driver, List<Cookie> cookies) {
+        List<Map<String, Object>> params = new ArrayList<>(cookies.size());
+        for (Cookie ck : cookies) {
+            Map<String, Object> param = new HashMap<>();
+            param.put("name", ck.getName());
+            param.put("value", ck.getValue());
+            param.put("domain", ck.getDomain());
+            param.put("path", ck.getPath());
+            param.put("secure", ck.isSecure());
+            param.put("httpOnly", ck.isHttpOnly());
+            if (ck.getExpiry() != null) {
+                param.put("expires", ck.getExpiry().getTime() / 1000L);
+            }
+            params.add(param);
+        }
+        setCookies(driver, params);
+    }
 
-                sleep(2000L);
+    private void setCookies(WebDriver driver, List<Map<String, Object>> cookies) {
+        Map<String, Object> command = new HashMap<>();
+        command.put("cookies", cookies);
+        ChromeDevTools.execute(driver, "Network.setCookies", command);
+    }
 
-                // Read objects
-                int i = 1;
-                while (true) {
-                    Cookie ck = (Cookie) oi.readObject();
-                    String domain = ck.getDomain();
-                    String name = ck.getName();
-                    String path = ck.getPath();
-                    String value = ck.getValue();
-                    try {
-                        driver().manage().addCookie(ck); // This will add the stored cookie to your current session
-                        if (!silent) {
-                            System.out.println(i + ": added Cookie           : domain=" + domain + ", name=" + name + ", path=" + path + ", value=" + value);
+    /**
+     * Reads the cookies of all domains, WebDriver only returns those of the current document.
+     *
+     * @return the cookies as {@code Network.setCookies} parameters, null if DevTools are not available
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> readAllCookies(WebDriver driver, String driverContext) {
+        try {
+            Object cookies = ChromeDevTools.execute(driver, "Network.getAllCookies").get("cookies");
+            List<Map<String, Object>> params = new ArrayList<>();
+            if (cookies instanceof List) {
+                for (Map<String, Object> cookie : (List<Map<String, Object>>) cookies) {
+                    Map<String, Object> param = new HashMap<>();
+                    for (String key : COOKIE_PARAMS) {
+                        if (cookie.get(key) != null) {
+                            param.put(key, cookie.get(key));
                         }
-                    } catch (Exception exw) {
-                        System.err.println(exw.getMessage() + " for Cookie: domain=" + domain + ", name=" + name + ", path=" + path + ", value=" + value);
-                        exw.printStackTrace();
-                        toBeDeleted = true;
                     }
-                    i++;
-                }
-            } else {
-                System.out.println("no Cookies to load");
-            }
-        } catch (EOFException ex) {
-            // end of file
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        } finally {
-            if (oi != null) {
-                try {
-                    oi.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
-            if (fi != null) {
-                try {
-                    fi.close();
-                } catch (IOException e) {
-                    // TODO Auto-generated catch block
-                    e.printStackTrace();
+                    if (Boolean.TRUE.equals(cookie.get("session"))) {
+                        param.remove("expires");
+                    }
+                    params.add(param);
                 }
             }
-            if (toBeDeleted) {
-                File file = new File(driverContext + "_Cookies.data");
-                if (file.exists()) {
-                    file.delete();
-                }
+            return params;
+        } catch (WebDriverException | WebsiteWorkflowException ex) {
+            logger.warn("reading Cookies of driver context '{}' failed, stored Cookies are used: {}", driverContext, ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fallback for drivers without DevTools access: WebDriver can only add cookies for the current document, so a
+     * dummy page has to be opened first. Rejected cookies are skipped.
+     */
+    private void addCookies(WebDriver driver, List<Cookie> cookies) {
+        driver.get("https://example.com/");
+        awaitReady(driver);
+        for (Cookie ck : cookies) {
+            try {
+                driver.manage().addCookie(ck);
+            } catch (Exception ex) {
+                logger.warn("{} for Cookie: domain={}, name={}, path={}", ex.getMessage(), ck.getDomain(), ck.getName(), ck.getPath());
             }
         }
     }
@@ -310,4 +1306,23 @@ public class ChromeDriverPool {
         } catch (Exception e) {
         }
     }
+
+    /**
+     * Placeholder of a Chrome being started, holding the slots reserved before it runs.
+     */
+    private static final class PendingChrome {
+
+        private final boolean withImages;
+
+        private final int capacity;
+
+        private final CompletableFuture<SharedChrome> started = new CompletableFuture<>();
+
+        private int reserved;
+
+        private PendingChrome(boolean withImages, int capacity) {
+            this.withImages = withImages;
+            this.capacity = capacity;
+        }
+    }
 }
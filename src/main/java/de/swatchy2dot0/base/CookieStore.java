@@ -0,0 +1,370 @@
+package de.swatchy2dot0.base;
+
+import org.openqa.selenium.Cookie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Persists the cookies of a driver identity (the driver context name) in a line based text format.
+ * <p>
+ * Every identity has a snapshot file {@code <identity>_Cookies.txt} and a journal {@code <identity>_Cookies.journal}.
+ * A flush only appends the cookies that changed since the last flush to the journal; once the journal grows larger
+ * than the snapshot both are compacted into a new snapshot that atomically replaces the old one. A line that was cut
+ * off by a crash is ignored, so a broken write never costs more than that single cookie.
+ * <p>
+ * Loaded cookies are cached, all drivers of the same identity share one cached jar.
+ */
+public class CookieStore {
+
+    private final static Logger logger = LoggerFactory.getLogger(CookieStore.class);
+
+    private static final String HEADER = "# cookies v1";
+
+    private static final String SET = "S";
+
+    private static final String DELETE = "D";
+
+    private static final int FLAG_SECURE = 1;
+
+    private static final int FLAG_HTTP_ONLY = 2;
+
+    private final File directory;
+
+    private final Map<String, CookieJar> jars = new ConcurrentHashMap<>();
+
+    public CookieStore(File directory) {
+        super();
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the cookies of the given identity that are not yet expired.
+     */
+    public List<Cookie> load(String identity) {
+        return jar(identity).cookies();
+    }
+
+    /**
+     * Replaces the cached cookies of the given identity with the cookies currently held by a driver and records the
+     * difference for the next {@link #flush(String)}.
+     */
+    public void update(String identity, Collection<Cookie> cookies) {
+        jar(identity).update(cookies);
+    }
+
+    public void flush(String identity) {
+        CookieJar jar = jars.get(identity);
+        if (jar != null) {
+            jar.flush();
+        }
+    }
+
+    public void delete(String identity) {
+        CookieJar jar = jars.remove(identity);
+        if (jar != null) {
+            jar.clear();
+        }
+        snapshotFile(identity).delete();
+        journalFile(identity).delete();
+        legacyFile(identity).delete();
+    }
+
+    private CookieJar jar(String identity) {
+        return jars.computeIfAbsent(identity, CookieJar::new);
+    }
+
+    private File snapshotFile(String identity) {
+        return new File(directory, identity + "_Cookies.txt");
+    }
+
+    private File journalFile(String identity) {
+        return new File(directory, identity + "_Cookies.journal");
+    }
+
+    private File legacyFile(String identity) {
+        return new File(directory, identity + "_Cookies.data");
+    }
+
+    private static String key(Cookie cookie) {
+        return cookie.getDomain() + '\t' + cookie.getPath() + '\t' + cookie.getName();
+    }
+
+    private final class CookieJar {
+
+        private final String identity;
+
+        private final Map<String, Cookie> cookies = new LinkedHashMap<>();
+
+        private final Map<String, Cookie> changed = new LinkedHashMap<>();
+
+        private final Set<String> deleted = new LinkedHashSet<>();
+
+        private int journalLines = 0;
+
+        CookieJar(String identity) {
+            this.identity = identity;
+            read();
+        }
+
+        synchronized List<Cookie> cookies() {
+            Date now = new Date();
+            List<Cookie> result = new ArrayList<>(cookies.size());
+            for (Cookie cookie : cookies.values()) {
+                if (cookie.getExpiry() == null || cookie.getExpiry().after(now)) {
+                    result.add(cookie);
+                }
+            }
+            return result;
+        }
+
+        synchronized void update(Collection<Cookie> current) {
+            Map<String, Cookie> currentByKey = new HashMap<>();
+            for (Cookie cookie : current) {
+                String key = key(cookie);
+                currentByKey.put(key, cookie);
+                if (!isSame(cookies.get(key), cookie)) {
+                    cookies.put(key, cookie);
+                    changed.put(key, cookie);
+                    deleted.remove(key);
+                }
+            }
+            Iterator<Map.Entry<String, Cookie>> it = cookies.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Cookie> entry = it.next();
+                if (!currentByKey.containsKey(entry.getKey())) {
+                    it.remove();
+                    changed.remove(entry.getKey());
+                    deleted.add(entry.getKey());
+                }
+            }
+        }
+
+        synchronized void flush() {
+            if (changed.isEmpty() && deleted.isEmpty()) {
+                return;
+            }
+            try {
+                if (journalLines + changed.size() + deleted.size() > Math.max(64, cookies.size())) {
+                    compact();
+                } else {
+                    StringBuilder lines = new StringBuilder();
+                    for (Cookie cookie : changed.values()) {
+                        appendSet(lines, cookie);
+                    }
+                    for (String key : deleted) {
+                        appendDelete(lines, key);
+                    }
+                    Files.write(journalFile(identity).toPath(), lines.toString().getBytes(StandardCharsets.UTF_8),
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+                    journalLines += changed.size() + deleted.size();
+                }
+                changed.clear();
+                deleted.clear();
+            } catch (IOException ex) {
+                logger.warn("flushing Cookies of '{}' failed: {}", identity, ex.getMessage());
+            }
+        }
+
+        synchronized void clear() {
+            cookies.clear();
+            changed.clear();
+            deleted.clear();
+            journalLines = 0;
+        }
+
+        /**
+         * Writes all cookies to a temporary file that atomically replaces the snapshot, then drops the journal.
+         */
+        private void compact() throws IOException {
+            StringBuilder lines = new StringBuilder(HEADER).append('\n');
+            for (Cookie cookie : cookies.values()) {
+                appendSet(lines, cookie);
+            }
+            Path snapshot = snapshotFile(identity).toPath();
+            Path temp = Files.createTempFile(directory.toPath(), identity + "_Cookies", ".tmp");
+            try {
+                Files.write(temp, lines.toString().getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException ex) {
+                    Files.move(temp, snapshot, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            Files.deleteIfExists(journalFile(identity).toPath());
+            journalLines = 0;
+        }
+
+        private void read() {
+            File snapshot = snapshotFile(identity);
+            File journal = journalFile(identity);
+            boolean needsCompaction = false;
+            if (!snapshot.exists() && !journal.exists() && legacyFile(identity).exists()) {
+                readLegacy();
+                needsCompaction = true;
+            }
+            needsCompaction |= !readLines(snapshot);
+            needsCompaction |= !readLines(journal);
+            if (needsCompaction) {
+                try {
+                    compact();
+                    legacyFile(identity).delete();
+                } catch (IOException ex) {
+                    logger.warn("compacting Cookies of '{}' failed: {}", identity, ex.getMessage());
+                }
+            }
+        }
+
+        /**
+         * @return false if the file ends with an incomplete line that must not be appended to
+         */
+        private boolean readLines(File file) {
+            if (!file.exists()) {
+                return true;
+            }
+            String content;
+            try {
+                content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            } catch (IOException ex) {
+                logger.warn("reading Cookies from {} failed: {}", file, ex.getMessage());
+                return true;
+            }
+            boolean journal = file.equals(journalFile(identity));
+            int start = 0;
+            int end;
+            while ((end = content.indexOf('\n', start)) >= 0) {
+                String line = content.substring(start, end);
+                start = end + 1;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    parseLine(line);
+                    if (journal) {
+                        journalLines++;
+                    }
+                } catch (RuntimeException ex) {
+                    logger.warn("skipping unreadable Cookie line in {}: {}", file, ex.getMessage());
+                }
+            }
+            return start == content.length();
+        }
+
+        private void parseLine(String line) {
+            String[] fields = line.split("\t", -1);
+            if (DELETE.equals(fields[0]) && fields.length == 4) {
+                cookies.remove(emptyToNull(unescape(fields[1])) + "\t" + unescape(fields[2]) + '\t' + unescape(fields[3]));
+            } else if (SET.equals(fields[0]) && fields.length == 7) {
+                String expiry = fields[5];
+                int flags = Integer.parseInt(fields[6]);
+                Cookie cookie = new Cookie(unescape(fields[3]), unescape(fields[4]), emptyToNull(unescape(fields[1])),
+                        unescape(fields[2]), expiry.isEmpty() ? null : new Date(Long.parseLong(expiry)),
+                        (flags & FLAG_SECURE) != 0, (flags & FLAG_HTTP_ONLY) != 0);
+                cookie.validate();
+                cookies.put(key(cookie), cookie);
+            } else {
+                throw new IllegalArgumentException("unknown record '" + fields[0] + "' with " + fields.length + " fields");
+            }
+        }
+
+        private void readLegacy() {
+            File legacy = legacyFile(identity);
+            try (ObjectInputStream oi = new ObjectInputStream(new FileInputStream(legacy))) {
+                while (true) {
+                    Cookie cookie = (Cookie) oi.readObject();
+                    cookies.put(key(cookie), cookie);
+                }
+            } catch (EOFException ex) {
+                // end of file
+            } catch (Exception ex) {
+                logger.warn("reading legacy Cookies from {} failed: {}", legacy, ex.getMessage());
+            }
+            logger.info("{} Cookies migrated from {}", cookies.size(), legacy);
+        }
+    }
+
+    private static boolean isSame(Cookie a, Cookie b) {
+        return a != null && a.getValue().equals(b.getValue()) && Objects.equals(a.getExpiry(), b.getExpiry())
+                && a.isSecure() == b.isSecure() && a.isHttpOnly() == b.isHttpOnly();
+    }
+
+    /**
+     * {@code S <domain> <path> <name> <value> <expiry millis or empty> <flags>}
+     */
+    private static void appendSet(StringBuilder lines, Cookie cookie) {
+        int flags = (cookie.isSecure() ? FLAG_SECURE : 0) | (cookie.isHttpOnly() ? FLAG_HTTP_ONLY : 0);
+        lines.append(SET)
+                .append('\t').append(escape(cookie.getDomain()))
+                .append('\t').append(escape(cookie.getPath()))
+                .append('\t').append(escape(cookie.getName()))
+                .append('\t').append(escape(cookie.getValue()))
+                .append('\t').append(cookie.getExpiry() == null ? "" : String.valueOf(cookie.getExpiry().getTime()))
+                .append('\t').append(flags)
+                .append('\n');
+    }
+
+    /**
+     * {@code D <domain> <path> <name>}
+     */
+    private static void appendDelete(StringBuilder lines, String key) {
+        String[] parts = key.split("\t", -1);
+        lines.append(DELETE)
+                .append('\t').append(escape(parts[0]))
+                .append('\t').append(escape(parts[1]))
+                .append('\t').append(escape(parts[2]))
+                .append('\n');
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = null;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            String replacement = c == '\\' ? "\\\\" : c == '\t' ? "\\t" : c == '\n' ? "\\n" : c == '\r' ? "\\r" : null;
+            if (replacement != null && escaped == null) {
+                escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+            }
+            if (escaped != null) {
+                if (replacement != null) {
+                    escaped.append(replacement);
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped == null ? value : escaped.toString();
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
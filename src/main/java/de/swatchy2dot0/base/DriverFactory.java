@@ -0,0 +1,17 @@
+package de.swatchy2dot0.base;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * Starts the browsers of a {@link ChromeDriverPool}, e.g. to connect to a remote Selenium server instead of a local
+ * Chrome. The pool calls it concurrently, so implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface DriverFactory {
+
+    /**
+     * @param withImages   false to start the browser with images switched off
+     * @param downloadPath directory for downloads, blank for the browser default
+     */
+    WebDriver create(boolean withImages, String downloadPath);
+}
@@ -0,0 +1,126 @@
+package de.swatchy2dot0.base;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Usage statistics of a single pooled driver, used by the {@link ChromeDriverPool} to decide when a driver is worn out
+ * and has to be recycled.
+ */
+public class DriverHealth {
+
+    private final long createdAtMillis = System.currentTimeMillis();
+
+    private final boolean withImages;
+
+    private final String downloadPath;
+
+    private final AtomicLong navigations = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    private volatile long jsHeapBytes = -1L;
+
+    private volatile String retireReason;
+
+    private CompletableFuture<WebDriver> replacement;
+
+    DriverHealth(boolean withImages, String downloadPath) {
+        super();
+        this.withImages = withImages;
+        this.downloadPath = downloadPath;
+    }
+
+    public long getCreatedAtMillis() {
+        return createdAtMillis;
+    }
+
+    public long getAgeMillis() {
+        return System.currentTimeMillis() - createdAtMillis;
+    }
+
+    public long getNavigations() {
+        return navigations.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * JS heap of the current page in bytes as sampled on the last check, -1 if it has never been sampled
+     */
+    public long getJsHeapBytes() {
+        return jsHeapBytes;
+    }
+
+    public boolean isRetiring() {
+        return retireReason != null;
+    }
+
+    public String getRetireReason() {
+        return retireReason;
+    }
+
+    boolean isWithImages() {
+        return withImages;
+    }
+
+    String getDownloadPath() {
+        return downloadPath;
+    }
+
+    long recordNavigation() {
+        return navigations.incrementAndGet();
+    }
+
+    long recordError() {
+        return errors.incrementAndGet();
+    }
+
+    void setJsHeapBytes(long jsHeapBytes) {
+        this.jsHeapBytes = jsHeapBytes;
+    }
+
+    /**
+     * @return true only for the first caller, so a driver is retired once
+     */
+    synchronized boolean markForRetirement(String reason) {
+        if (retireReason != null) {
+            return false;
+        }
+        retireReason = reason;
+        return true;
+    }
+
+    synchronized void setReplacement(CompletableFuture<WebDriver> replacement) {
+        this.replacement = replacement;
+    }
+
+    /**
+     * Hands out the prepared replacement once it is ready; the future completes with null if there was no free slot
+     * to start a replacement ahead of time.
+     */
+    synchronized CompletableFuture<WebDriver> takeReadyReplacement() {
+        if (replacement == null || !replacement.isDone()) {
+            return null;
+        }
+        CompletableFuture<WebDriver> ready = replacement;
+        replacement = null;
+        return ready;
+    }
+
+    synchronized CompletableFuture<WebDriver> takeReplacement() {
+        CompletableFuture<WebDriver> taken = replacement;
+        replacement = null;
+        return taken;
+    }
+
+    @Override
+    public String toString() {
+        return "DriverHealth{navigations=" + navigations + ", errors=" + errors + ", jsHeapBytes=" + jsHeapBytes
+                + ", ageMillis=" + getAgeMillis() + ", retireReason=" + retireReason + "}";
+    }
+}
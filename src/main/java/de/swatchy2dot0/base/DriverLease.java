@@ -0,0 +1,68 @@
+package de.swatchy2dot0.base;
+
+import org.openqa.selenium.WebDriver;
+
+/**
+ * A driver borrowed from the {@link ChromeDriverPool}. The lease must be handed back with {@link #close()} (or
+ * {@link ChromeDriverPool#release(DriverLease)}); leases held longer than the pool's lease timeout are reclaimed and
+ * their driver is quit.
+ */
+public class DriverLease implements AutoCloseable {
+
+    private final ChromeDriverPool driverPool;
+
+    private final WebDriver driver;
+
+    private final long leasedAtMillis;
+
+    private final long expiresAtMillis;
+
+    private volatile boolean returned = false;
+
+    DriverLease(ChromeDriverPool driverPool, WebDriver driver, long leaseTimeoutMillis) {
+        super();
+        this.driverPool = driverPool;
+        this.driver = driver;
+        this.leasedAtMillis = System.currentTimeMillis();
+        this.expiresAtMillis = leaseTimeoutMillis > 0 ? leasedAtMillis + leaseTimeoutMillis : Long.MAX_VALUE;
+    }
+
+    public WebDriver driver() {
+        if (returned) {
+            throw new WebsiteWorkflowException("driver lease has already been returned or reclaimed");
+        }
+        return driver;
+    }
+
+    public long getLeasedAtMillis() {
+        return leasedAtMillis;
+    }
+
+    public boolean isExpired() {
+        return System.currentTimeMillis() > expiresAtMillis;
+    }
+
+    public boolean isReturned() {
+        return returned;
+    }
+
+    /**
+     * Marks the lease as returned; only the first call wins so a driver is never handed back twice.
+     */
+    synchronized boolean markReturned() {
+        if (returned) {
+            return false;
+        }
+        returned = true;
+        return true;
+    }
+
+    WebDriver getDriver() {
+        return driver;
+    }
+
+    @Override
+    public void close() {
+        driverPool.release(this);
+    }
+}
@@ -0,0 +1,23 @@
+package de.swatchy2dot0.base;
+
+/**
+ * How {@link AbstractCrawler#fetchPage(String)} loads a page.
+ */
+public enum FetchMode {
+
+    /**
+     * always render the page in Chrome
+     */
+    BROWSER,
+
+    /**
+     * always fetch the page with a plain HTTP request, JavaScript is never executed
+     */
+    HTTP,
+
+    /**
+     * fetch with a plain HTTP request first and fall back to Chrome when the {@link RenderingRules} say the page needs
+     * JavaScript
+     */
+    HYBRID
+}
@@ -0,0 +1,42 @@
+package de.swatchy2dot0.base;
+
+/**
+ * The HTML of a page loaded by {@link AbstractCrawler#fetchPage(String)}.
+ */
+public class FetchedPage {
+
+    private final String url;
+
+    private final String html;
+
+    private final boolean rendered;
+
+    private final long durationMillis;
+
+    public FetchedPage(String url, String html, boolean rendered, long durationMillis) {
+        super();
+        this.url = url;
+        this.html = html;
+        this.rendered = rendered;
+        this.durationMillis = durationMillis;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getHtml() {
+        return html;
+    }
+
+    /**
+     * @return true if the page was rendered in Chrome, false if it was fetched with a plain HTTP request
+     */
+    public boolean isRendered() {
+        return rendered;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+}
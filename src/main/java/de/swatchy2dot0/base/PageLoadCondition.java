@@ -0,0 +1,22 @@
+package de.swatchy2dot0.base;
+
+/**
+ * Stages of a page load, from the earliest to the latest.
+ */
+public enum PageLoadCondition {
+
+    /**
+     * the HTML is parsed, images and styles may still be loading
+     */
+    DOM_CONTENT_LOADED,
+
+    /**
+     * the load event fired
+     */
+    LOAD,
+
+    /**
+     * no resource finished loading for the idle time after the load event
+     */
+    NETWORK_IDLE
+}
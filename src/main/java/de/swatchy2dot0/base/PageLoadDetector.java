@@ -0,0 +1,187 @@
+package de.swatchy2dot0.base;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.WebElement;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for a page load with listeners inside the page instead of polling the driver.
+ * <p>
+ * An optional element of the previous page is watched with a MutationObserver until it is detached or its document
+ * unloads. Then a script waits in the current document for the DOMContentLoaded and load events and, for
+ * {@link PageLoadCondition#NETWORK_IDLE}, until a PerformanceObserver has seen no finished resource for the idle time.
+ * Each phase is a single asynchronous script call, so the wait costs a few round-trips and no CPU, and it ends as soon
+ * as the condition is reached.
+ */
+public class PageLoadDetector {
+
+    /**
+     * chromedriver's default script timeout, set after a wait if the previous timeout could not be read
+     */
+    private static final long DEFAULT_SCRIPT_TIMEOUT_MILLIS = 30000L;
+
+    private static final long SCRIPT_TIMEOUT_MARGIN_MILLIS = 5000L;
+
+    private static final String AWAIT_DETACHED_SCRIPT = ""
+            + "var element = arguments[0], timeoutMillis = arguments[1], done = arguments[arguments.length - 1];"
+            + "if (!element.isConnected) { done('DETACHED'); return; }"
+            + "var timer;"
+            + "var observer = new MutationObserver(function() {"
+            + "  if (!element.isConnected) { observer.disconnect(); clearTimeout(timer); done('DETACHED'); }"
+            + "});"
+            + "observer.observe(document, {childList: true, subtree: true});"
+            + "timer = setTimeout(function() { observer.disconnect(); done('TIMEOUT'); }, timeoutMillis);";
+
+    private static final String AWAIT_LOAD_SCRIPT = ""
+            + "var target = arguments[0], idleMillis = arguments[1], timeoutMillis = arguments[2];"
+            + "var done = arguments[arguments.length - 1];"
+            + "var order = ['DOM_CONTENT_LOADED', 'LOAD', 'NETWORK_IDLE'];"
+            + "var reached = null, finished = false, idleTimer = null, observer = null, deadline = null;"
+            + "function finish(timedOut) {"
+            + "  if (finished) { return; }"
+            + "  finished = true;"
+            + "  if (observer) { observer.disconnect(); }"
+            + "  clearTimeout(idleTimer);"
+            + "  clearTimeout(deadline);"
+            + "  done([reached, timedOut]);"
+            + "}"
+            + "function restartIdle() {"
+            + "  clearTimeout(idleTimer);"
+            + "  idleTimer = setTimeout(function() { reach('NETWORK_IDLE'); }, idleMillis);"
+            + "}"
+            + "function reach(condition) {"
+            + "  if (order.indexOf(condition) > order.indexOf(reached)) { reached = condition; }"
+            + "  if (order.indexOf(reached) >= order.indexOf(target)) { finish(false); return; }"
+            + "  if (reached === 'LOAD' && !observer) {"
+            + "    if (typeof PerformanceObserver !== 'undefined') {"
+            + "      observer = new PerformanceObserver(restartIdle);"
+            + "      observer.observe({entryTypes: ['resource']});"
+            + "    }"
+            + "    restartIdle();"
+            + "  }"
+            + "}"
+            + "deadline = setTimeout(function() { finish(true); }, timeoutMillis);"
+            + "document.addEventListener('DOMContentLoaded', function() { reach('DOM_CONTENT_LOADED'); });"
+            + "window.addEventListener('load', function() { reach('LOAD'); });"
+            + "if (document.readyState === 'complete') { reach('LOAD'); }"
+            + "else if (document.readyState === 'interactive') { reach('DOM_CONTENT_LOADED'); }";
+
+    private volatile PageLoadCondition condition = PageLoadCondition.LOAD;
+
+    private volatile long timeoutMillis = 20000L;
+
+    private volatile long idleMillis = 500L;
+
+    /**
+     * The page is considered loaded once it reached this condition, {@link PageLoadCondition#LOAD} by default.
+     */
+    public PageLoadDetector setCondition(PageLoadCondition condition) {
+        this.condition = condition;
+        return this;
+    }
+
+    public PageLoadDetector setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+        return this;
+    }
+
+    /**
+     * Quiet time without finished requests that counts as {@link PageLoadCondition#NETWORK_IDLE}.
+     */
+    public PageLoadDetector setIdleTime(long idleTime, TimeUnit unit) {
+        this.idleMillis = unit.toMillis(idleTime);
+        return this;
+    }
+
+    /**
+     * Waits until the current page reached the configured condition.
+     */
+    public PageLoadResult await(WebDriver driver) {
+        return await(driver, null);
+    }
+
+    /**
+     * Waits until {@code previousPageElement} is gone, e.g. after a click that navigates, and the new page reached the
+     * configured condition. The script timeout of the driver is raised for the wait and restored afterwards.
+     */
+    public PageLoadResult await(WebDriver driver, WebElement previousPageElement) {
+        long startMillis = System.currentTimeMillis();
+        long deadline = startMillis + timeoutMillis;
+        JavascriptExecutor js = (JavascriptExecutor) driver;
+        long previousScriptTimeout = scriptTimeoutOf(driver);
+        boolean navigated = false;
+        try {
+            if (previousPageElement != null) {
+                navigated = awaitDetached(driver, js, previousPageElement, deadline);
+                if (!navigated) {
+                    return new PageLoadResult(null, true, false, System.currentTimeMillis() - startMillis);
+                }
+            }
+            while (true) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return new PageLoadResult(null, true, navigated, System.currentTimeMillis() - startMillis);
+                }
+                try {
+                    setScriptTimeout(driver, remaining + SCRIPT_TIMEOUT_MARGIN_MILLIS);
+                    List<?> outcome = (List<?>) js.executeAsyncScript(AWAIT_LOAD_SCRIPT, condition.name(), idleMillis, remaining);
+                    PageLoadCondition reached = outcome.get(0) == null ? null : PageLoadCondition.valueOf((String) outcome.get(0));
+                    return new PageLoadResult(reached, Boolean.TRUE.equals(outcome.get(1)), navigated,
+                            System.currentTimeMillis() - startMillis);
+                } catch (WebDriverException ex) {
+                    if (!isUnloaded(ex)) {
+                        throw ex;
+                    }
+                    // a redirect replaced the document while waiting, wait in the new one
+                    navigated = true;
+                }
+            }
+        } finally {
+            setScriptTimeout(driver, previousScriptTimeout);
+        }
+    }
+
+    private boolean awaitDetached(WebDriver driver, JavascriptExecutor js, WebElement element, long deadline) {
+        long remaining = Math.max(0L, deadline - System.currentTimeMillis());
+        try {
+            setScriptTimeout(driver, remaining + SCRIPT_TIMEOUT_MARGIN_MILLIS);
+            return "DETACHED".equals(js.executeAsyncScript(AWAIT_DETACHED_SCRIPT, element, remaining));
+        } catch (StaleElementReferenceException ex) {
+            return true;
+        } catch (WebDriverException ex) {
+            if (isUnloaded(ex)) {
+                return true;
+            }
+            throw ex;
+        }
+    }
+
+    private static boolean isUnloaded(WebDriverException ex) {
+        String message = ex.getMessage();
+        return message != null && (message.contains("document unloaded") || message.contains("unloaded while waiting"));
+    }
+
+    /**
+     * Selenium 3 cannot read timeouts, so they are read from chromedriver directly.
+     */
+    private static long scriptTimeoutOf(WebDriver driver) {
+        try {
+            Object script = ChromeDevTools.getTimeouts(driver).get("script");
+            if (script instanceof Number) {
+                return ((Number) script).longValue();
+            }
+        } catch (WebDriverException | WebsiteWorkflowException ex) {
+            // not a chromedriver session
+        }
+        return DEFAULT_SCRIPT_TIMEOUT_MILLIS;
+    }
+
+    private static void setScriptTimeout(WebDriver driver, long millis) {
+        driver.manage().timeouts().setScriptTimeout(millis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,54 @@
+package de.swatchy2dot0.base;
+
+/**
+ * Outcome of a {@link PageLoadDetector} wait.
+ */
+public class PageLoadResult {
+
+    private final PageLoadCondition reached;
+
+    private final boolean timedOut;
+
+    private final boolean navigated;
+
+    private final long durationMillis;
+
+    PageLoadResult(PageLoadCondition reached, boolean timedOut, boolean navigated, long durationMillis) {
+        super();
+        this.reached = reached;
+        this.timedOut = timedOut;
+        this.navigated = navigated;
+        this.durationMillis = durationMillis;
+    }
+
+    /**
+     * @return the latest condition the page reached, null if not even the DOM was loaded
+     */
+    public PageLoadCondition getReached() {
+        return reached;
+    }
+
+    /**
+     * @return true if the awaited condition was not reached in time
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * @return true if the element of the previous page was detached or its document unloaded
+     */
+    public boolean isNavigated() {
+        return navigated;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "PageLoadResult{reached=" + reached + ", timedOut=" + timedOut + ", navigated=" + navigated
+                + ", durationMillis=" + durationMillis + "}";
+    }
+}
@@ -0,0 +1,208 @@
+package de.swatchy2dot0.base;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * Decides in {@link FetchMode#HYBRID} whether a page can be taken from a plain HTTP response or has to be rendered in
+ * Chrome.
+ * <p>
+ * Configured host patterns win. For all other hosts the plain response is checked with a content predicate and the
+ * outcome is counted per host: once most plain responses of a host turned out to need JavaScript, the plain attempt is
+ * skipped for that host, apart from an occasional probe in case the site changed.
+ */
+public class RenderingRules {
+
+    private static final String[] SCRIPT_ONLY_MARKERS = {
+            "id=\"root\"></div>", "id=\"app\"></div>", "id=\"__next\"></div>", "id=\"__nuxt\"></div>",
+            "enable javascript", "javascript is required", "javascript aktivieren"
+    };
+
+    private final List<Pattern> renderedHosts = new CopyOnWriteArrayList<>();
+
+    private final List<Pattern> plainHosts = new CopyOnWriteArrayList<>();
+
+    private final Map<String, HostStatistics> statistics = new ConcurrentHashMap<>();
+
+    private volatile Predicate<String> sufficientContent = RenderingRules::looksComplete;
+
+    private volatile int minSamples = 3;
+
+    private volatile double renderRatio = 0.5d;
+
+    private volatile int probeInterval = 50;
+
+    /**
+     * Pages of hosts matching the regex are always rendered in Chrome.
+     */
+    public RenderingRules alwaysRender(String hostRegex) {
+        renderedHosts.add(Pattern.compile(hostRegex, Pattern.CASE_INSENSITIVE));
+        return this;
+    }
+
+    /**
+     * Pages of hosts matching the regex are always taken from the plain HTTP response.
+     */
+    public RenderingRules neverRender(String hostRegex) {
+        plainHosts.add(Pattern.compile(hostRegex, Pattern.CASE_INSENSITIVE));
+        return this;
+    }
+
+    /**
+     * Replaces the default heuristic that judges whether a plain HTTP response contains the content, e.g. with a check
+     * for a CSS class the crawler relies on.
+     */
+    public RenderingRules setSufficientContent(Predicate<String> sufficientContent) {
+        this.sufficientContent = sufficientContent;
+        return this;
+    }
+
+    /**
+     * A host is rendered directly once {@code minSamples} plain responses were checked and at least
+     * {@code renderRatio} of them needed JavaScript; every {@code probeInterval}-th page is still fetched plain.
+     */
+    public RenderingRules setLearning(int minSamples, double renderRatio, int probeInterval) {
+        this.minSamples = minSamples;
+        this.renderRatio = renderRatio;
+        this.probeInterval = probeInterval;
+        return this;
+    }
+
+    /**
+     * @return true if the host of the URL is configured with {@link #neverRender(String)}
+     */
+    public boolean isNeverRendered(String url) {
+        return matches(plainHosts, hostOf(url));
+    }
+
+    public boolean shouldTryPlainFetch(String url) {
+        String host = hostOf(url);
+        if (matches(renderedHosts, host)) {
+            return false;
+        }
+        if (matches(plainHosts, host)) {
+            return true;
+        }
+        HostStatistics hostStatistics = statistics.get(host);
+        if (hostStatistics == null || !hostStatistics.needsRendering(minSamples, renderRatio)) {
+            return true;
+        }
+        int interval = probeInterval;
+        return interval > 0 && hostStatistics.skipped.incrementAndGet() % interval == 0;
+    }
+
+    /**
+     * Checks a plain HTTP response and learns from the outcome. Failed fetches say nothing about the page and are not
+     * counted.
+     *
+     * @param html the body of a successful response, null if the fetch failed
+     * @return true if the response can be used without rendering
+     */
+    public boolean isSufficient(String url, String html) {
+        if (html == null) {
+            return false;
+        }
+        String host = hostOf(url);
+        if (matches(plainHosts, host)) {
+            return true;
+        }
+        boolean sufficient = sufficientContent.test(html);
+        HostStatistics hostStatistics = statistics.computeIfAbsent(host, key -> new HostStatistics());
+        hostStatistics.samples.incrementAndGet();
+        if (!sufficient) {
+            hostStatistics.rendered.incrementAndGet();
+        }
+        return sufficient;
+    }
+
+    /**
+     * Default heuristic: the response has a reasonable amount of visible text and no marker of a script-only page.
+     */
+    public static boolean looksComplete(String html) {
+        if (html.length() < 512) {
+            return false;
+        }
+        for (String marker : SCRIPT_ONLY_MARKERS) {
+            if (containsIgnoreCase(html, marker)) {
+                return false;
+            }
+        }
+        return visibleTextLength(html, 200) >= 200;
+    }
+
+    private static int visibleTextLength(String html, int enough) {
+        int length = 0;
+        boolean inTag = false;
+        for (int i = 0; i < html.length() && length < enough; i++) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                inTag = true;
+                if (html.regionMatches(true, i, "<script", 0, 7) || html.regionMatches(true, i, "<style", 0, 6)) {
+                    String end = html.regionMatches(true, i, "<script", 0, 7) ? "</script" : "</style";
+                    int close = indexOfIgnoreCase(html, end, i);
+                    if (close < 0) {
+                        break;
+                    }
+                    i = close;
+                }
+            } else if (c == '>') {
+                inTag = false;
+            } else if (!inTag && !Character.isWhitespace(c)) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    private static boolean containsIgnoreCase(String text, String search) {
+        return indexOfIgnoreCase(text, search, 0) >= 0;
+    }
+
+    private static int indexOfIgnoreCase(String text, String search, int from) {
+        for (int i = from; i <= text.length() - search.length(); i++) {
+            if (text.regionMatches(true, i, search, 0, search.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(List<Pattern> patterns, String host) {
+        for (Pattern pattern : patterns) {
+            if (pattern.matcher(host).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException ex) {
+            return "";
+        }
+    }
+
+    private static final class HostStatistics {
+
+        private final AtomicLong samples = new AtomicLong();
+
+        private final AtomicLong rendered = new AtomicLong();
+
+        private final AtomicLong skipped = new AtomicLong();
+
+        boolean needsRendering(int minSamples, double renderRatio) {
+            long sampleCount = samples.get();
+            return sampleCount >= minSamples && rendered.get() >= sampleCount * renderRatio;
+        }
+    }
+}
@@ -4,16 +4,26 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Stack;
+import java.util.ArrayDeque;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
 
+/**
+ * Driver context and proxy flag of the current thread. Each thread only touches its own instance, so nothing is
+ * synchronized; use {@link #capture()} or {@link #propagating(Executor)} to hand the context to other threads.
+ */
 public class RuntimeContext {
 
     private final static Logger logger = LoggerFactory.getLogger(RuntimeContext.class);
 
-    private static final ThreadLocal<RuntimeContext> runtimeContexts = new ThreadLocal<>();
+    private static final ThreadLocal<RuntimeContext> runtimeContexts = ThreadLocal.withInitial(() -> {
+        logger.debug("RuntimeContext created for thread {}", Thread.currentThread().getName());
+        return new RuntimeContext();
+    });
 
-    private final Stack<String> driverContext = new Stack();
+    private ArrayDeque<String> driverContext = new ArrayDeque<>();
 
     private boolean useProxy = false;
 
@@ -21,22 +31,21 @@ public class RuntimeContext {
         super();
     }
 
-    public static synchronized RuntimeContext getCurrent() {
-        RuntimeContext currentContext = runtimeContexts.get();
-        if (currentContext == null) {
-            currentContext = new RuntimeContext();
-            logger.debug("RuntimeContext created for thread {}", Thread.currentThread().getName());
-            runtimeContexts.set(currentContext);
-        }
-        return currentContext;
+    public static RuntimeContext getCurrent() {
+        return runtimeContexts.get();
     }
 
     public String peekDriverContext() {
-        String driverContext = this.driverContext.isEmpty() ? null : this.driverContext.peek();
+        String driverContext = this.driverContext.peek();
         if (StringUtils.isBlank(driverContext)) {
             String newDriverContext = Thread.currentThread().getName();
+            if (StringUtils.isBlank(newDriverContext)) {
+                // virtual threads have no name
+                newDriverContext = "thread-" + Thread.currentThread().getId();
+            }
             pushDriverContext(newDriverContext);
             logger.debug("created new driver context '{}'", newDriverContext);
+            driverContext = newDriverContext;
         }
         return driverContext;
     }
@@ -70,4 +79,99 @@ public class RuntimeContext {
     public void setUseProxy(boolean useProxy) {
         this.useProxy = useProxy;
     }
+
+    /**
+     * Copies the driver contexts and the proxy flag of the current thread. The current driver context is fixed at
+     * this point, a thread without one gets its name as driver context just like {@link #peekDriverContext()}.
+     */
+    public static Snapshot capture() {
+        RuntimeContext current = getCurrent();
+        current.peekDriverContext();
+        return new Snapshot(new ArrayDeque<>(current.driverContext), current.useProxy);
+    }
+
+    /**
+     * Wraps the executor so every task runs in the context of the thread that submitted it.
+     */
+    public static Executor propagating(Executor executor) {
+        return command -> executor.execute(capture().wrap(command));
+    }
+
+    /**
+     * Like {@link CompletableFuture#supplyAsync(Supplier, Executor)}, running the supplier in the current context.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        Snapshot snapshot = capture();
+        return CompletableFuture.supplyAsync(() -> snapshot.get(supplier), executor);
+    }
+
+    /**
+     * Like {@link CompletableFuture#runAsync(Runnable, Executor)}, running the task in the current context.
+     */
+    public static CompletableFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        return CompletableFuture.runAsync(capture().wrap(runnable), executor);
+    }
+
+    /**
+     * Driver contexts and proxy flag of a thread at one point in time. While a wrapped task runs, they replace the
+     * context of the executing thread, which is restored afterwards; pushes and pops of the task stay local to it.
+     */
+    public static final class Snapshot {
+
+        private final ArrayDeque<String> driverContext;
+
+        private final boolean useProxy;
+
+        private Snapshot(ArrayDeque<String> driverContext, boolean useProxy) {
+            this.driverContext = driverContext;
+            this.useProxy = useProxy;
+        }
+
+        public String getDriverContext() {
+            return driverContext.peek();
+        }
+
+        public boolean useProxy() {
+            return useProxy;
+        }
+
+        public <T> T call(Callable<T> callable) throws Exception {
+            RuntimeContext current = getCurrent();
+            ArrayDeque<String> previousDriverContext = current.driverContext;
+            boolean previousUseProxy = current.useProxy;
+            current.driverContext = new ArrayDeque<>(driverContext);
+            current.useProxy = useProxy;
+            try {
+                return callable.call();
+            } finally {
+                current.driverContext = previousDriverContext;
+                current.useProxy = previousUseProxy;
+            }
+        }
+
+        /**
+         * Runs the supplier in this context, for code that cannot throw checked exceptions.
+         */
+        public <T> T get(Supplier<T> supplier) {
+            try {
+                return call((Callable<T>) supplier::get);
+            } catch (RuntimeException ex) {
+                throw ex;
+            } catch (Exception ex) {
+                // unreachable, a supplier throws no checked exceptions
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        public Runnable wrap(Runnable runnable) {
+            return () -> get(() -> {
+                runnable.run();
+                return null;
+            });
+        }
+
+        public <T> Callable<T> wrap(Callable<T> callable) {
+            return () -> call(callable);
+        }
+    }
 }
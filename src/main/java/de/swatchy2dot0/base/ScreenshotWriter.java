@@ -0,0 +1,145 @@
+package de.swatchy2dot0.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Writes screenshots to disk on a background thread so crawler threads only pay for the capture.
+ * <p>
+ * The queue is bounded: when it is full the crawler thread writes the screenshot itself, which slows the crawl down
+ * instead of piling up screenshots on the heap. After {@link #shutdown()} every write fails with a
+ * {@link RejectedExecutionException}.
+ */
+public class ScreenshotWriter {
+
+    private final static Logger logger = LoggerFactory.getLogger(ScreenshotWriter.class);
+
+    private static volatile ScreenshotWriter instance;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * writes submitted and not yet completed, {@link #flush(long, TimeUnit)} waits on this writer until none is left
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public ScreenshotWriter(int threads, int queueCapacity) {
+        super();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "ScreenshotWriter");
+            thread.setDaemon(true);
+            return thread;
+        }, (task, pool) -> {
+            if (pool.isShutdown()) {
+                throw new RejectedExecutionException("ScreenshotWriter is shut down");
+            }
+            task.run();
+        });
+    }
+
+    /**
+     * @return the shared writer, a new one once the previous was shut down
+     */
+    public static ScreenshotWriter getDefault() {
+        ScreenshotWriter writer = instance;
+        if (writer == null || writer.isShutdown()) {
+            synchronized (ScreenshotWriter.class) {
+                if (instance == null || instance.isShutdown()) {
+                    instance = new ScreenshotWriter(1, 64);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public CompletableFuture<File> write(File target, byte[] png) {
+        return submit(target, () -> png);
+    }
+
+    /**
+     * Writes a Base64 encoded image as returned by the DevTools protocol; it is decoded on the writer thread.
+     */
+    public CompletableFuture<File> writeBase64(File target, String base64Png) {
+        return submit(target, () -> Base64.getDecoder().decode(base64Png));
+    }
+
+    /**
+     * Waits until all submitted screenshots are written.
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (this) {
+            while (pending.get() > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+        return true;
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    private CompletableFuture<File> submit(File target, Supplier<byte[]> image) {
+        String threadName = Thread.currentThread().getName();
+        pending.incrementAndGet();
+        CompletableFuture<File> written;
+        try {
+            written = CompletableFuture.supplyAsync(() -> write(threadName, target, image), executor);
+        } catch (RejectedExecutionException ex) {
+            written = new CompletableFuture<>();
+            written.completeExceptionally(ex);
+        }
+        return written.whenComplete((file, ex) -> {
+            if (pending.decrementAndGet() == 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        });
+    }
+
+    private static File write(String threadName, File target, Supplier<byte[]> image) {
+        try {
+            File parent = target.getAbsoluteFile().getParentFile();
+            Files.createDirectories(parent.toPath());
+            File temp = File.createTempFile("screenshot", ".tmp", parent);
+            try {
+                Files.write(temp.toPath(), image.get());
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
+            logger.info("{} screenshot           : {}", threadName, target.getPath());
+            return target;
+        } catch (IOException ex) {
+            logger.warn("screenshot {} could not be written: {}", target, ex.getMessage());
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
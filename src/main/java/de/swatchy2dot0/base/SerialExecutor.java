@@ -0,0 +1,108 @@
+package de.swatchy2dot0.base;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Runs tasks one after another in submission order on a shared executor. No thread is held while the queue is
+ * empty, so one instance per driver context is cheap.
+ * <p>
+ * Once the queue has drained the instance retires: it accepts no more tasks and hands itself to {@code onIdle}, so
+ * the owner can drop it and create a fresh one for the next task.
+ */
+final class SerialExecutor {
+
+    private final static Logger logger = LoggerFactory.getLogger(SerialExecutor.class);
+
+    private final Executor executor;
+
+    private final Consumer<SerialExecutor> onIdle;
+
+    private final Queue<Task> tasks = new ArrayDeque<>();
+
+    private Task active;
+
+    private boolean retired;
+
+    SerialExecutor(Executor executor, Consumer<SerialExecutor> onIdle) {
+        this.executor = executor;
+        this.onIdle = onIdle;
+    }
+
+    /**
+     * @param onRejected called instead of running the task if the underlying executor rejects it
+     * @return false if this instance has retired and did not take the task
+     */
+    boolean execute(Runnable task, Consumer<RejectedExecutionException> onRejected) {
+        synchronized (this) {
+            if (retired) {
+                return false;
+            }
+            tasks.add(new Task(task, onRejected));
+            if (active == null) {
+                scheduleNext();
+            }
+        }
+        // the queue may be empty again if the task was rejected
+        retireIfIdle();
+        return true;
+    }
+
+    private synchronized void scheduleNext() {
+        while ((active = tasks.poll()) != null) {
+            try {
+                executor.execute(active);
+                return;
+            } catch (RejectedExecutionException ex) {
+                // the task never runs, so nothing else would move the queue on
+                active.reject(ex);
+            }
+        }
+    }
+
+    private void retireIfIdle() {
+        synchronized (this) {
+            if (active != null || retired) {
+                return;
+            }
+            retired = true;
+        }
+        onIdle.accept(this);
+    }
+
+    private final class Task implements Runnable {
+
+        private final Runnable task;
+
+        private final Consumer<RejectedExecutionException> onRejected;
+
+        private Task(Runnable task, Consumer<RejectedExecutionException> onRejected) {
+            this.task = task;
+            this.onRejected = onRejected;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.run();
+            } finally {
+                scheduleNext();
+                retireIfIdle();
+            }
+        }
+
+        private void reject(RejectedExecutionException ex) {
+            try {
+                onRejected.accept(ex);
+            } catch (RuntimeException handlerEx) {
+                logger.warn("handling a rejected task failed: {}", handlerEx.getMessage());
+            }
+        }
+    }
+}
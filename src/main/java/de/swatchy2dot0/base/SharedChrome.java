@@ -0,0 +1,206 @@
+package de.swatchy2dot0.base;
+
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.remote.RemoteWebDriver;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One Chrome process hosting several isolated browser contexts, each with separate cookies and storage.
+ * <p>
+ * A host session started with the full options creates the contexts through DevTools. Every context gets its own
+ * WebDriver session that is attached to the running Chrome via {@code debuggerAddress} and switched to the context's
+ * page, so the pool can hand it out like a driver of its own. All sessions share one chromedriver process.
+ */
+final class SharedChrome {
+
+    private final static Logger logger = LoggerFactory.getLogger(SharedChrome.class);
+
+    private final ChromeDriverService service;
+
+    private final RemoteWebDriver host;
+
+    private final String debuggerAddress;
+
+    private final boolean withImages;
+
+    private final int capacity;
+
+    /**
+     * browser context id per attached session
+     */
+    private final Map<WebDriver, String> contexts = new ConcurrentHashMap<>();
+
+    /**
+     * contexts reserved by {@link #reserve()} and not yet opened or already closed again
+     */
+    private int reserved;
+
+    private SharedChrome(ChromeDriverService service, RemoteWebDriver host, String debuggerAddress, boolean withImages, int capacity) {
+        this.service = service;
+        this.host = host;
+        this.debuggerAddress = debuggerAddress;
+        this.withImages = withImages;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Starts a Chrome for up to {@code capacity} browser contexts.
+     */
+    static SharedChrome start(ChromeOptions options, boolean withImages, int capacity) {
+        ChromeDriverService service = ChromeDriverService.createDefaultService();
+        try {
+            service.start();
+        } catch (IOException ex) {
+            throw new WebDriverException("chromedriver could not be started: " + ex.getMessage(), ex);
+        }
+        RemoteWebDriver host = null;
+        try {
+            host = new RemoteWebDriver(service.getUrl(), options);
+            String debuggerAddress = getDebuggerAddress(host.getCapabilities());
+            logger.info("shared Chrome started at {} for up to {} browser contexts", debuggerAddress, capacity);
+            return new SharedChrome(service, host, debuggerAddress, withImages, capacity);
+        } catch (RuntimeException ex) {
+            if (host != null) {
+                host.quit();
+            }
+            service.stop();
+            throw ex;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String getDebuggerAddress(Capabilities capabilities) {
+        Object chromeOptions = capabilities.getCapability("goog:chromeOptions");
+        Object address = chromeOptions instanceof Map ? ((Map<String, Object>) chromeOptions).get("debuggerAddress") : null;
+        if (address == null) {
+            throw new WebDriverException("chromedriver reported no debuggerAddress, browser contexts cannot be attached");
+        }
+        return address.toString();
+    }
+
+    boolean isWithImages() {
+        return withImages;
+    }
+
+    synchronized boolean reserve() {
+        if (reserved >= capacity) {
+            return false;
+        }
+        reserved++;
+        return true;
+    }
+
+    synchronized void unreserve() {
+        reserved--;
+    }
+
+    synchronized boolean isUnused() {
+        return reserved == 0;
+    }
+
+    /**
+     * Opens a new browser context with one blank page and attaches a session to it. Must only be called after a
+     * successful {@link #reserve()}.
+     *
+     * @param sessionOptions options of the attached session, e.g. logging preferences; the debugger address is added
+     * @param downloadPath   directory for downloads of this context, blank for Chrome's default
+     */
+    WebDriver openContext(ChromeOptions sessionOptions, String downloadPath) {
+        String browserContextId = (String) ChromeDevTools.execute(host, "Target.createBrowserContext").get("browserContextId");
+        RemoteWebDriver session = null;
+        try {
+            Map<String, Object> params = new HashMap<>();
+            params.put("url", "about:blank");
+            params.put("browserContextId", browserContextId);
+            String targetId = (String) ChromeDevTools.execute(host, "Target.createTarget", params).get("targetId");
+
+            if (downloadPath != null && !downloadPath.trim().isEmpty()) {
+                Map<String, Object> download = new HashMap<>();
+                download.put("behavior", "allow");
+                download.put("browserContextId", browserContextId);
+                download.put("downloadPath", downloadPath);
+                ChromeDevTools.execute(host, "Browser.setDownloadBehavior", download);
+            }
+
+            sessionOptions.setExperimentalOption("debuggerAddress", debuggerAddress);
+            session = new RemoteWebDriver(service.getUrl(), sessionOptions);
+            switchToTarget(session, targetId);
+            contexts.put(session, browserContextId);
+            logger.debug("browser context {} opened in shared Chrome {}", browserContextId, debuggerAddress);
+            return session;
+        } catch (RuntimeException ex) {
+            if (session != null) {
+                quitQuietly(session);
+            }
+            disposeContext(browserContextId);
+            throw ex;
+        }
+    }
+
+    /**
+     * An attached session sees the pages of all contexts, its window handles are the DevTools target ids (older
+     * chromedriver versions prefix them with {@code CDwindow-}).
+     */
+    private static void switchToTarget(WebDriver session, String targetId) {
+        for (String handle : session.getWindowHandles()) {
+            if (handle.toUpperCase().endsWith(targetId.toUpperCase())) {
+                session.switchTo().window(handle);
+                return;
+            }
+        }
+        throw new WebDriverException("page " + targetId + " of the new browser context not found");
+    }
+
+    /**
+     * Detaches the session and disposes its browser context with all cookies, storage and pages.
+     *
+     * @return false if the session does not belong to this Chrome
+     */
+    boolean closeContext(WebDriver session) {
+        String browserContextId = contexts.remove(session);
+        if (browserContextId == null) {
+            return false;
+        }
+        // a session attached via debuggerAddress leaves the browser running when it quits
+        quitQuietly(session);
+        disposeContext(browserContextId);
+        return true;
+    }
+
+    private void disposeContext(String browserContextId) {
+        try {
+            ChromeDevTools.execute(host, "Target.disposeBrowserContext", Collections.<String, Object>singletonMap("browserContextId", browserContextId));
+        } catch (WebDriverException ex) {
+            logger.debug("browser context {} could not be disposed: {}", browserContextId, ex.getMessage());
+        }
+    }
+
+    void quit() {
+        for (WebDriver session : contexts.keySet()) {
+            quitQuietly(session);
+        }
+        contexts.clear();
+        quitQuietly(host);
+        service.stop();
+        logger.info("shared Chrome at {} quit", debuggerAddress);
+    }
+
+    private static void quitQuietly(WebDriver driver) {
+        try {
+            driver.quit();
+        } catch (Exception ex) {
+            logger.debug("quitting WebDriver session failed: {}", ex.getMessage());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package de.swatchy2dot0.crawl;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Probabilistic {@link UrlSeenSet} for very large crawls. Memory is fixed at construction; a URL is never reported as
+ * new twice, but with the configured false positive probability a new URL is reported as already seen and skipped.
+ */
+public class BloomFilterUrlSeenSet implements UrlSeenSet {
+
+    private final AtomicLongArray bits;
+
+    private final long bitCount;
+
+    private final int hashFunctions;
+
+    private final AtomicLong added = new AtomicLong();
+
+    public BloomFilterUrlSeenSet(long expectedUrls, double falsePositiveProbability) {
+        super();
+        if (expectedUrls <= 0 || falsePositiveProbability <= 0d || falsePositiveProbability >= 1d) {
+            throw new IllegalArgumentException("invalid bloom filter parameters " + expectedUrls + ", " + falsePositiveProbability);
+        }
+        // a whole number of hash functions needs slightly more bits than the optimum for a fractional one
+        int k = (int) Math.ceil(-Math.log(falsePositiveProbability) / Math.log(2));
+        long optimalBits = (long) Math.ceil(-k * (double) expectedUrls / Math.log(1d - Math.pow(falsePositiveProbability, 1d / k)));
+        long optimalWords = (optimalBits + 63) >>> 6;
+        long words = Math.min(Integer.MAX_VALUE - 8, optimalWords);
+        this.bits = new AtomicLongArray((int) words);
+        this.bitCount = words << 6;
+        this.hashFunctions = words == optimalWords ? k
+                : Math.max(1, (int) Math.round((double) bitCount / expectedUrls * Math.log(2)));
+    }
+
+    @Override
+    public boolean add(String canonicalUrl) {
+        long hash = UrlSeenSet.hash64(canonicalUrl);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        boolean changed = false;
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            while (true) {
+                long current = bits.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+                if (bits.compareAndSet(word, current, current | mask)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+        if (changed) {
+            added.incrementAndGet();
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean contains(String canonicalUrl) {
+        long hash = UrlSeenSet.hash64(canonicalUrl);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return added.get();
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    public int getHashFunctions() {
+        return hashFunctions;
+    }
+}
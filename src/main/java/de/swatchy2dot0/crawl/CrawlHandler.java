@@ -0,0 +1,12 @@
+package de.swatchy2dot0.crawl;
+
+/**
+ * Crawls a single URL on a worker thread of a {@link CrawlScheduler}. The worker's driver context is active, so
+ * {@code ChromeDriverPool.driver()} returns the driver bound to the worker. Links found on the page can be handed
+ * back via {@link CrawlScheduler#submit(String, int, int)}.
+ */
+@FunctionalInterface
+public interface CrawlHandler {
+
+    void handle(CrawlRequest request, CrawlScheduler scheduler) throws Exception;
+}
@@ -0,0 +1,55 @@
+package de.swatchy2dot0.crawl;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A URL waiting in the frontier of a {@link CrawlScheduler}. Higher priorities are crawled first, requests of the same
+ * priority in submission order.
+ */
+public class CrawlRequest implements Comparable<CrawlRequest> {
+
+    private static final AtomicLong sequence = new AtomicLong();
+
+    private final String url;
+
+    private final int priority;
+
+    private final int depth;
+
+    private final long order = sequence.getAndIncrement();
+
+    public CrawlRequest(String url, int priority, int depth) {
+        super();
+        this.url = url;
+        this.priority = priority;
+        this.depth = depth;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * number of links followed from a seed to reach this URL
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    @Override
+    public int compareTo(CrawlRequest other) {
+        if (priority != other.priority) {
+            return Integer.compare(other.priority, priority);
+        }
+        return Long.compare(order, other.order);
+    }
+
+    @Override
+    public String toString() {
+        return "CrawlRequest{url=" + url + ", priority=" + priority + ", depth=" + depth + "}";
+    }
+}
@@ -0,0 +1,332 @@
+package de.swatchy2dot0.crawl;
+
+import de.swatchy2dot0.base.ChromeDriverPool;
+import de.swatchy2dot0.base.RuntimeContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distributes the URLs of a crawl frontier over a fixed number of worker threads, each bound to its own driver
+ * context of the {@link ChromeDriverPool}.
+ * <p>
+ * Every worker owns a priority queue. URLs of the same host go to the same worker so they reuse its session, and a
+ * worker whose queue runs dry steals the best request from the longest queue of the others, so no Chrome instance
+ * idles while there is work left.
+ */
+public class CrawlScheduler {
+
+    private final static Logger logger = LoggerFactory.getLogger(CrawlScheduler.class);
+
+    private static final int THROUGHPUT_WINDOW_SECONDS = 60;
+
+    private static final long STEAL_RETRY_MILLIS = 10L;
+
+    private final ChromeDriverPool driverPool;
+
+    private final CrawlHandler handler;
+
+    private final String name;
+
+    private final List<Worker> workers = new ArrayList<>();
+
+    /**
+     * one permit per queued request, so idle workers block instead of spinning
+     */
+    private final Semaphore queued = new Semaphore(0);
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final Object idleMonitor = new Object();
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private final AtomicLong stolen = new AtomicLong();
+
+    private final AtomicLongArray completedPerSecond = new AtomicLongArray(THROUGHPUT_WINDOW_SECONDS);
+
+    private final AtomicLongArray bucketSecond = new AtomicLongArray(THROUGHPUT_WINDOW_SECONDS);
+
+    private volatile boolean running = false;
+
+    private volatile UrlSeenSet seenSet;
+
+    public CrawlScheduler(ChromeDriverPool driverPool, int workerCount, CrawlHandler handler) {
+        this(driverPool, workerCount, handler, "crawl-worker");
+    }
+
+    /**
+     * @param workerCount at most the maximum size of the pool, every worker binds a driver of its own
+     */
+    public CrawlScheduler(ChromeDriverPool driverPool, int workerCount, CrawlHandler handler, String name) {
+        super();
+        if (workerCount < 1) {
+            throw new IllegalArgumentException("at least one worker is needed");
+        }
+        if (workerCount > driverPool.getMaxSize()) {
+            throw new IllegalArgumentException(workerCount + " workers need more drivers than the pool provides (max pool size " + driverPool.getMaxSize() + ")");
+        }
+        this.driverPool = driverPool;
+        this.handler = handler;
+        this.name = name;
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Worker(name + "-" + i));
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Worker worker : workers) {
+            Thread thread = new Thread(worker, worker.driverContext);
+            thread.setDaemon(true);
+            worker.thread = thread;
+            thread.start();
+        }
+        logger.info("{} started with {} workers", name, workers.size());
+    }
+
+    /**
+     * Enables deduplication: a URL whose canonical form has been submitted before is dropped.
+     */
+    public void setSeenSet(UrlSeenSet seenSet) {
+        this.seenSet = seenSet;
+    }
+
+    public boolean submit(String url) {
+        return submit(url, 0, 0);
+    }
+
+    public boolean submit(String url, int priority, int depth) {
+        return submit(new CrawlRequest(url, priority, depth));
+    }
+
+    /**
+     * @return false if the URL has already been submitted and deduplication is enabled
+     */
+    public boolean submit(CrawlRequest request) {
+        UrlSeenSet seen = seenSet;
+        if (seen != null && !seen.add(UrlCanonicalizer.canonicalize(request.getUrl()))) {
+            return false;
+        }
+        outstanding.incrementAndGet();
+        workers.get(workerIndex(request.getUrl())).queue.add(request);
+        queued.release();
+        return true;
+    }
+
+    /**
+     * Waits until the frontier is empty and no request is in progress.
+     *
+     * @return false if the timeout elapsed first
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (idleMonitor) {
+            while (outstanding.get() > 0) {
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMillis <= 0) {
+                    return false;
+                }
+                idleMonitor.wait(remainingMillis);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stops all workers after their current request and closes their drivers. Queued requests are dropped.
+     */
+    public synchronized void shutdown() {
+        running = false;
+        for (Worker worker : workers) {
+            if (worker.thread != null) {
+                worker.thread.interrupt();
+            }
+        }
+        for (Worker worker : workers) {
+            if (worker.thread != null) {
+                try {
+                    worker.thread.join(TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        int dropped = 0;
+        for (Worker worker : workers) {
+            dropped += worker.queue.drainTo(new ArrayList<>());
+        }
+        queued.drainPermits();
+        if (dropped > 0 && outstanding.addAndGet(-dropped) == 0) {
+            synchronized (idleMonitor) {
+                idleMonitor.notifyAll();
+            }
+        }
+        logger.info("{} stopped: {} completed, {} failed, {} stolen, {} dropped", name, completed.get(), failed.get(), stolen.get(), dropped);
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Worker worker : workers) {
+            depth += worker.queue.size();
+        }
+        return depth;
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    public long getCompletedCount() {
+        return completed.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getStolenCount() {
+        return stolen.get();
+    }
+
+    /**
+     * finished requests per second, averaged over the last minute
+     */
+    public double getThroughputPerSecond() {
+        long now = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        long sum = 0;
+        for (int i = 0; i < THROUGHPUT_WINDOW_SECONDS; i++) {
+            if (now - bucketSecond.get(i) < THROUGHPUT_WINDOW_SECONDS) {
+                sum += completedPerSecond.get(i);
+            }
+        }
+        return sum / (double) THROUGHPUT_WINDOW_SECONDS;
+    }
+
+    private int workerIndex(String url) {
+        String host;
+        try {
+            host = URI.create(url).getHost();
+        } catch (IllegalArgumentException ex) {
+            host = null;
+        }
+        int hash = (host != null ? host : url).hashCode();
+        return Math.floorMod(hash, workers.size());
+    }
+
+    private CrawlRequest take(Worker self) throws InterruptedException {
+        queued.acquire();
+        // a permit guarantees that a request is queued somewhere, but other workers may be taking it concurrently
+        while (true) {
+            CrawlRequest request = self.queue.poll();
+            if (request == null) {
+                request = steal(self);
+            }
+            if (request == null) {
+                request = self.queue.poll(STEAL_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            if (request != null) {
+                return request;
+            }
+        }
+    }
+
+    /**
+     * Takes the best request of the longest queue of the other workers, any other queue if that one ran dry.
+     */
+    private CrawlRequest steal(Worker self) {
+        Worker victim = null;
+        for (Worker worker : workers) {
+            if (worker != self && (victim == null || worker.queue.size() > victim.queue.size())) {
+                victim = worker;
+            }
+        }
+        CrawlRequest request = victim == null ? null : victim.queue.poll();
+        for (int i = 0; request == null && i < workers.size(); i++) {
+            Worker worker = workers.get(i);
+            if (worker != self && worker != victim) {
+                request = worker.queue.poll();
+            }
+        }
+        if (request != null) {
+            stolen.incrementAndGet();
+        }
+        return request;
+    }
+
+    private void finished(boolean success) {
+        if (success) {
+            completed.incrementAndGet();
+        } else {
+            failed.incrementAndGet();
+        }
+        long second = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        int bucket = (int) (second % THROUGHPUT_WINDOW_SECONDS);
+        long bucketStart = bucketSecond.get(bucket);
+        if (bucketStart != second && bucketSecond.compareAndSet(bucket, bucketStart, second)) {
+            completedPerSecond.set(bucket, 0);
+        }
+        completedPerSecond.incrementAndGet(bucket);
+
+        if (outstanding.decrementAndGet() == 0) {
+            synchronized (idleMonitor) {
+                idleMonitor.notifyAll();
+            }
+        }
+    }
+
+    private class Worker implements Runnable {
+
+        private final String driverContext;
+
+        private final PriorityBlockingQueue<CrawlRequest> queue = new PriorityBlockingQueue<>();
+
+        private volatile Thread thread;
+
+        Worker(String driverContext) {
+            this.driverContext = driverContext;
+        }
+
+        @Override
+        public void run() {
+            RuntimeContext.getCurrent().pushDriverContext(driverContext);
+            try {
+                while (running) {
+                    CrawlRequest request;
+                    try {
+                        request = take(this);
+                    } catch (InterruptedException ex) {
+                        break;
+                    }
+                    boolean success = false;
+                    try {
+                        handler.handle(request, CrawlScheduler.this);
+                        success = true;
+                    } catch (Exception ex) {
+                        logger.warn("{} failed for {}: {}", driverContext, request.getUrl(), ex.getMessage());
+                    } finally {
+                        finished(success);
+                    }
+                }
+            } finally {
+                driverPool.closeDriver();
+                RuntimeContext.getCurrent().popDriverContext();
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package de.swatchy2dot0.crawl;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Extracts the targets of {@code href} and {@code src} attributes from HTML with a single pass state machine.
+ * <p>
+ * The page can be fed in arbitrary chunks, a tag may span two chunks. Relative links are resolved against the page
+ * URL, or against the first {@code <base href>} of the page, and handed to the consumer as absolute URLs without
+ * collecting them in a list first. Apart from the emitted strings the extractor does not allocate per character or
+ * per tag.
+ * <p>
+ * An instance is not thread safe and extracts a single page.
+ */
+public class LinkExtractor {
+
+    private static final int MAX_NAME_LENGTH = 8;
+
+    private static final int MAX_LINK_LENGTH = 8192;
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private enum State {
+        TEXT, TAG_NAME, ATTRIBUTES, ATTRIBUTE_NAME, BEFORE_VALUE, QUOTED_VALUE, UNQUOTED_VALUE, DECLARATION
+    }
+
+    private final Consumer<String> consumer;
+
+    private URI base;
+
+    /**
+     * "scheme://authority" and "scheme://authority/path/" of the base, for resolving plain links by concatenation
+     */
+    private String baseOrigin;
+
+    private String baseDirectory;
+
+    private boolean baseSeen = false;
+
+    private State state = State.TEXT;
+
+    private final char[] name = new char[MAX_NAME_LENGTH];
+
+    private int nameLength;
+
+    private boolean tagIsBase;
+
+    private boolean captureValue;
+
+    private char quote;
+
+    private char lastChar;
+
+    private final StringBuilder value = new StringBuilder(256);
+
+    public LinkExtractor(String pageUrl, Consumer<String> consumer) {
+        super();
+        this.consumer = consumer;
+        setBase(parse(pageUrl));
+    }
+
+    public static void extract(CharSequence html, String pageUrl, Consumer<String> consumer) {
+        LinkExtractor extractor = new LinkExtractor(pageUrl, consumer);
+        extractor.feed(html);
+        extractor.finish();
+    }
+
+    public void feed(CharBuffer chunk) {
+        while (chunk.hasRemaining()) {
+            accept(chunk.get());
+        }
+    }
+
+    public void feed(CharSequence chunk) {
+        int length = chunk.length();
+        for (int i = 0; i < length; i++) {
+            accept(chunk.charAt(i));
+        }
+    }
+
+    /**
+     * Emits an unquoted attribute value that ends with the input.
+     */
+    public void finish() {
+        if (state == State.UNQUOTED_VALUE) {
+            emit();
+        }
+        state = State.TEXT;
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case TEXT:
+                if (c == '<') {
+                    state = State.TAG_NAME;
+                    nameLength = 0;
+                }
+                break;
+            case TAG_NAME:
+                if (c == '!' || c == '?') {
+                    state = State.DECLARATION;
+                } else if (c == '>') {
+                    state = State.TEXT;
+                } else if (isWhitespace(c) || c == '/') {
+                    if (nameLength > 0 || c != '/') {
+                        tagIsBase = nameIs("base");
+                        state = State.ATTRIBUTES;
+                    }
+                } else {
+                    appendName(c);
+                }
+                break;
+            case ATTRIBUTES:
+                if (c == '>') {
+                    state = State.TEXT;
+                } else if (!isWhitespace(c) && c != '/') {
+                    nameLength = 0;
+                    appendName(c);
+                    state = State.ATTRIBUTE_NAME;
+                }
+                break;
+            case ATTRIBUTE_NAME:
+                if (c == '=') {
+                    captureValue = nameIs("href") || nameIs("src");
+                    value.setLength(0);
+                    state = State.BEFORE_VALUE;
+                } else if (c == '>') {
+                    state = State.TEXT;
+                } else if (isWhitespace(c)) {
+                    // "name = value" is valid HTML, keep the name until the next character decides
+                    break;
+                } else if (nameLength > 0 && isWhitespaceBefore()) {
+                    nameLength = 0;
+                    appendName(c);
+                } else {
+                    appendName(c);
+                }
+                break;
+            case BEFORE_VALUE:
+                if (c == '"' || c == '\'') {
+                    quote = c;
+                    state = State.QUOTED_VALUE;
+                } else if (c == '>') {
+                    state = State.TEXT;
+                } else if (!isWhitespace(c)) {
+                    appendValue(c);
+                    state = State.UNQUOTED_VALUE;
+                }
+                break;
+            case QUOTED_VALUE:
+                if (c == quote) {
+                    emit();
+                    state = State.ATTRIBUTES;
+                } else {
+                    appendValue(c);
+                }
+                break;
+            case UNQUOTED_VALUE:
+                if (isWhitespace(c)) {
+                    emit();
+                    state = State.ATTRIBUTES;
+                } else if (c == '>') {
+                    emit();
+                    state = State.TEXT;
+                } else {
+                    appendValue(c);
+                }
+                break;
+            case DECLARATION:
+                if (c == '>') {
+                    state = State.TEXT;
+                }
+                break;
+            default:
+                throw new IllegalStateException(state.name());
+        }
+        lastChar = c;
+    }
+
+    private boolean isWhitespaceBefore() {
+        return isWhitespace(lastChar);
+    }
+
+    private void appendName(char c) {
+        if (nameLength < MAX_NAME_LENGTH) {
+            name[nameLength] = Character.toLowerCase(c);
+        }
+        nameLength++;
+    }
+
+    private boolean nameIs(String expected) {
+        if (nameLength != expected.length()) {
+            return false;
+        }
+        for (int i = 0; i < nameLength; i++) {
+            if (name[i] != expected.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void appendValue(char c) {
+        if (captureValue && value.length() < MAX_LINK_LENGTH) {
+            value.append(c);
+        }
+    }
+
+    private void emit() {
+        if (!captureValue) {
+            return;
+        }
+        captureValue = false;
+        String link = resolve(value);
+        if (link == null) {
+            return;
+        }
+        if (tagIsBase) {
+            // only the first base element counts
+            if (!baseSeen) {
+                baseSeen = true;
+                URI parsed = parse(link);
+                if (parsed != null) {
+                    setBase(parsed);
+                }
+            }
+            return;
+        }
+        consumer.accept(link);
+    }
+
+    private void setBase(URI base) {
+        this.base = base;
+        if (base != null && base.isAbsolute() && !base.isOpaque() && base.getRawAuthority() != null) {
+            String path = base.getRawPath();
+            baseOrigin = base.getScheme() + "://" + base.getRawAuthority();
+            baseDirectory = baseOrigin + path.substring(0, path.lastIndexOf('/') + 1);
+        } else {
+            baseOrigin = null;
+            baseDirectory = null;
+        }
+    }
+
+    private String resolve(StringBuilder raw) {
+        int start = 0;
+        int end = raw.length();
+        while (start < end && isWhitespace(raw.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(raw.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end || raw.charAt(start) == '#' || startsWithIgnoreCase(raw, start, "javascript:")
+                || startsWithIgnoreCase(raw, start, "mailto:") || startsWithIgnoreCase(raw, start, "data:")
+                || startsWithIgnoreCase(raw, start, "tel:")) {
+            return null;
+        }
+        String link = decodeEntities(raw, start, end);
+        if (startsWithIgnoreCase(link, 0, "http://") || startsWithIgnoreCase(link, 0, "https://")) {
+            return link;
+        }
+        if (base == null) {
+            return null;
+        }
+        try {
+            if (link.startsWith("//")) {
+                return base.getScheme() + ":" + encodeIllegal(link);
+            }
+            if (link.startsWith("?") && baseOrigin != null) {
+                // java.net.URI implements RFC 2396 here, which would drop the last path segment
+                return baseOrigin + base.getRawPath() + encodeIllegal(link);
+            }
+            String encoded = encodeIllegal(link);
+            if (baseOrigin != null && encoded.indexOf(':') < 0 && encoded.indexOf("./") < 0 && !encoded.endsWith(".")) {
+                // no scheme and no dot segments: resolving is a plain concatenation
+                return encoded.startsWith("/") ? baseOrigin + encoded : baseDirectory + encoded;
+            }
+            return base.resolve(new URI(encoded)).toString();
+        } catch (URISyntaxException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Percent-encodes characters that browsers accept in links but {@link URI} rejects, e.g. spaces and umlauts.
+     */
+    private static String encodeIllegal(String link) {
+        StringBuilder encoded = null;
+        for (int i = 0; i < link.length(); i++) {
+            char c = link.charAt(i);
+            boolean legal = c > 0x20 && c < 0x7f && "\"<>\\^`{|}".indexOf(c) < 0;
+            if (!legal && encoded == null) {
+                encoded = new StringBuilder(link.length() + 16).append(link, 0, i);
+            }
+            if (encoded != null) {
+                if (legal) {
+                    encoded.append(c);
+                } else {
+                    int codePoint = link.codePointAt(i);
+                    if (Character.isSupplementaryCodePoint(codePoint)) {
+                        i++;
+                    }
+                    for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                        encoded.append('%').append(HEX[(b >> 4) & 0xf]).append(HEX[b & 0xf]);
+                    }
+                }
+            }
+        }
+        return encoded == null ? link : encoded.toString();
+    }
+
+    private static String decodeEntities(StringBuilder raw, int start, int end) {
+        String link = raw.substring(start, end);
+        if (link.indexOf('&') < 0) {
+            return link;
+        }
+        return link.replace("&amp;", "&").replace("&#38;", "&").replace("&quot;", "\"").replace("&#39;", "'");
+    }
+
+    private static boolean startsWithIgnoreCase(CharSequence text, int offset, String prefix) {
+        if (text.length() - offset < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (Character.toLowerCase(text.charAt(offset + i)) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\n' || c == '\t' || c == '\r' || c == '\f';
+    }
+
+    private static URI parse(String url) {
+        if (url == null) {
+            return null;
+        }
+        try {
+            URI uri = new URI(encodeIllegal(url.trim()));
+            if (uri.isAbsolute() && !uri.isOpaque() && (uri.getRawPath() == null || uri.getRawPath().isEmpty())) {
+                // resolving "a" against "http://host" would otherwise give "http://hosta"
+                uri = uri.resolve("/");
+            }
+            return uri;
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+    }
+}
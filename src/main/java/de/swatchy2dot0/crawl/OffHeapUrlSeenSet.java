@@ -0,0 +1,128 @@
+package de.swatchy2dot0.crawl;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+
+/**
+ * Exact {@link UrlSeenSet} that keeps the 64 bit URL hashes in open addressing tables outside of the Java heap, 8 bytes
+ * per URL at a load factor of at most one half. The tables are split into segments with their own monitor so workers
+ * rarely contend. Two different URLs with the same 64 bit hash are treated as one, which is negligible below billions
+ * of URLs.
+ */
+public class OffHeapUrlSeenSet implements UrlSeenSet {
+
+    private static final int SEGMENT_BITS = 6;
+
+    private static final int MAX_SEGMENT_CAPACITY = 1 << 27;
+
+    private static final long EMPTY = 0L;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    public OffHeapUrlSeenSet() {
+        this(1 << 20);
+    }
+
+    public OffHeapUrlSeenSet(long expectedUrls) {
+        super();
+        long perSegment = Math.max(16L, expectedUrls / segments.length);
+        int capacity = Integer.highestOneBit((int) Math.min(MAX_SEGMENT_CAPACITY / 2, perSegment * 2L - 1L)) << 1;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(capacity);
+        }
+    }
+
+    @Override
+    public boolean add(String canonicalUrl) {
+        long hash = nonEmpty(UrlSeenSet.hash64(canonicalUrl));
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))].add(hash);
+    }
+
+    @Override
+    public boolean contains(String canonicalUrl) {
+        long hash = nonEmpty(UrlSeenSet.hash64(canonicalUrl));
+        return segments[(int) (hash >>> (64 - SEGMENT_BITS))].contains(hash);
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private static long nonEmpty(long hash) {
+        return hash == EMPTY ? 1L : hash;
+    }
+
+    private static final class Segment {
+
+        private LongBuffer table;
+
+        private int mask;
+
+        private int size;
+
+        Segment(int capacity) {
+            table = allocate(capacity);
+            mask = capacity - 1;
+        }
+
+        synchronized boolean add(long hash) {
+            int index = indexOf(table, mask, hash);
+            if (table.get(index) == hash) {
+                return false;
+            }
+            table.put(index, hash);
+            if (++size > (mask + 1) >>> 1) {
+                grow();
+            }
+            return true;
+        }
+
+        synchronized boolean contains(long hash) {
+            return table.get(indexOf(table, mask, hash)) == hash;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        private void grow() {
+            int capacity = (mask + 1) << 1;
+            if (capacity > MAX_SEGMENT_CAPACITY) {
+                throw new IllegalStateException("URL seen set is full, use a BloomFilterUrlSeenSet for crawls this large");
+            }
+            LongBuffer grown = allocate(capacity);
+            int grownMask = capacity - 1;
+            for (int i = 0; i <= mask; i++) {
+                long hash = table.get(i);
+                if (hash != EMPTY) {
+                    grown.put(indexOf(grown, grownMask, hash), hash);
+                }
+            }
+            table = grown;
+            mask = grownMask;
+        }
+
+        /**
+         * linear probing, returns the slot holding the hash or the empty slot where it belongs
+         */
+        private static int indexOf(LongBuffer table, int mask, long hash) {
+            int index = (int) hash & mask;
+            while (true) {
+                long slot = table.get(index);
+                if (slot == hash || slot == EMPTY) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+        }
+
+        private static LongBuffer allocate(int capacity) {
+            return ByteBuffer.allocateDirect(capacity * 8).asLongBuffer();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package de.swatchy2dot0.crawl;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Normalizes URLs so that different spellings of the same resource are deduplicated: scheme and host are lowercased,
+ * default ports, fragments and dot segments are removed, an empty path becomes {@code /} and query parameters are
+ * sorted.
+ */
+public class UrlCanonicalizer {
+
+    private UrlCanonicalizer() {
+        super();
+    }
+
+    /**
+     * @return the canonical form, or the trimmed input if it is not a valid absolute URL
+     */
+    public static String canonicalize(String url) {
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = new URI(trimmed);
+        } catch (URISyntaxException ex) {
+            return trimmed;
+        }
+        if (!uri.isAbsolute() || uri.isOpaque() || uri.getRawAuthority() == null) {
+            return trimmed;
+        }
+
+        String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+        StringBuilder canonical = new StringBuilder(trimmed.length()).append(scheme).append("://");
+        if (uri.getRawUserInfo() != null) {
+            canonical.append(uri.getRawUserInfo()).append('@');
+        }
+        String host = uri.getHost();
+        if (host == null) {
+            // registry based authority, e.g. host names with underscores
+            canonical.append(uri.getRawAuthority().toLowerCase(Locale.ROOT));
+        } else {
+            canonical.append(host.toLowerCase(Locale.ROOT));
+            int port = uri.getPort();
+            if (port >= 0 && !isDefaultPort(scheme, port)) {
+                canonical.append(':').append(port);
+            }
+        }
+
+        String path = uri.normalize().getRawPath();
+        canonical.append(path == null || path.isEmpty() ? "/" : path);
+
+        String query = uri.getRawQuery();
+        if (query != null && !query.isEmpty()) {
+            String[] parameters = query.split("&");
+            Arrays.sort(parameters);
+            boolean first = true;
+            for (String parameter : parameters) {
+                if (parameter.isEmpty()) {
+                    continue;
+                }
+                canonical.append(first ? '?' : '&').append(parameter);
+                first = false;
+            }
+        }
+        return canonical.toString();
+    }
+
+    private static boolean isDefaultPort(String scheme, int port) {
+        return ("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443)
+                || ("ftp".equals(scheme) && port == 21);
+    }
+}
@@ -0,0 +1,40 @@
+package de.swatchy2dot0.crawl;
+
+/**
+ * Remembers which URLs have already been discovered. Implementations store 64 bit hashes of the canonical URL instead
+ * of the URL strings, see {@link UrlCanonicalizer}.
+ */
+public interface UrlSeenSet {
+
+    /**
+     * @return true if the URL was not seen before
+     */
+    boolean add(String canonicalUrl);
+
+    boolean contains(String canonicalUrl);
+
+    /**
+     * number of distinct URLs added so far (an estimate for probabilistic implementations)
+     */
+    long size();
+
+    /**
+     * 64 bit FNV-1a hash of the URL, finished with the MurmurHash3 mixer to spread the bits.
+     */
+    static long hash64(CharSequence url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            char c = url.charAt(i);
+            hash ^= c & 0xff;
+            hash *= 0x100000001b3L;
+            hash ^= c >>> 8;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,202 @@
+package de.swatchy2dot0.crawl;
+
+import de.swatchy2dot0.base.ChromeDriverPool;
+import de.swatchy2dot0.base.RuntimeContext;
+import de.swatchy2dot0.base.WebsiteWorkflowException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs every crawl task on a thread of its own, a virtual thread on Java 21 and later, so thousands of tasks waiting
+ * for HTTP responses or sleeping between page loads do not need thousands of OS threads.
+ * <p>
+ * Each task runs in the driver context {@code task-<id>}. Chrome is the scarce resource: work that needs a driver is
+ * passed to {@link #withDriver(Callable)}, which waits for one of a fixed number of permits and runs the work in the
+ * driver context of a driver slot. The slots keep their Chrome between tasks and are closed with the runner.
+ * <p>
+ * On older JVMs a cached pool of platform threads is used instead, which works the same but costs an OS thread per
+ * running task.
+ */
+public class VirtualThreadRunner implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(VirtualThreadRunner.class);
+
+    private static final AtomicLong taskIds = new AtomicLong();
+
+    private final ChromeDriverPool driverPool;
+
+    private final String name;
+
+    private final ExecutorService executor;
+
+    private final boolean virtual;
+
+    /**
+     * one permit per driver slot; fair, so tasks get a driver in the order they asked for one
+     */
+    private final Semaphore driverPermits;
+
+    private final ConcurrentLinkedQueue<String> freeDriverSlots = new ConcurrentLinkedQueue<>();
+
+    private final Set<String> driverSlots = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public VirtualThreadRunner(ChromeDriverPool driverPool) {
+        this(driverPool, driverPool.getMaxSize(), "crawl");
+    }
+
+    /**
+     * @param driverCount at most the maximum size of the pool, every driver slot keeps a driver of its own
+     */
+    public VirtualThreadRunner(ChromeDriverPool driverPool, int driverCount, String name) {
+        super();
+        if (driverCount < 1) {
+            throw new IllegalArgumentException("at least one driver is needed");
+        }
+        if (driverCount > driverPool.getMaxSize()) {
+            throw new IllegalArgumentException(driverCount + " driver slots need more drivers than the pool provides (max pool size " + driverPool.getMaxSize() + ")");
+        }
+        this.driverPool = driverPool;
+        this.name = name;
+        this.driverPermits = new Semaphore(driverCount, true);
+        for (int i = 0; i < driverCount; i++) {
+            String driverSlot = name + "-driver-" + i;
+            driverSlots.add(driverSlot);
+            freeDriverSlots.add(driverSlot);
+        }
+        ExecutorService virtualExecutor = newVirtualThreadPerTaskExecutor();
+        this.virtual = virtualExecutor != null;
+        this.executor = virtual ? virtualExecutor : newPlatformThreadExecutor(name);
+        logger.info("{} runs tasks on {} threads with {} drivers", name, virtual ? "virtual" : "platform", driverCount);
+    }
+
+    /**
+     * {@code Executors.newVirtualThreadPerTaskExecutor()} is looked up at runtime because the project still targets
+     * Java 8.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (NoSuchMethodException ex) {
+            return null;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            logger.warn("virtual threads are not available: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private static ExecutorService newPlatformThreadExecutor(String name) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, name + "-task-thread-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Starts the task on its own thread in a fresh driver context {@code task-<id>}.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        String taskContext = "task-" + taskIds.incrementAndGet();
+        CompletableFuture<T> result = new CompletableFuture<>();
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                RuntimeContext runtimeContext = RuntimeContext.getCurrent();
+                runtimeContext.pushDriverContext(taskContext);
+                try {
+                    result.complete(task.call());
+                } catch (Throwable ex) {
+                    result.completeExceptionally(ex);
+                } finally {
+                    runtimeContext.popDriverContext();
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException ex) {
+            inFlight.decrementAndGet();
+            throw ex;
+        }
+        return result;
+    }
+
+    /**
+     * Waits for a driver permit and runs the work in the driver context of a free driver slot, so
+     * {@link ChromeDriverPool#driver()} returns that slot's Chrome. Nested calls reuse the slot that is already held.
+     */
+    public <T> T withDriver(Callable<T> work) throws Exception {
+        RuntimeContext runtimeContext = RuntimeContext.getCurrent();
+        if (driverSlots.contains(runtimeContext.peekDriverContext())) {
+            return work.call();
+        }
+        try {
+            driverPermits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WebsiteWorkflowException("interrupted while waiting for a driver permit");
+        }
+        String driverSlot = freeDriverSlots.poll();
+        runtimeContext.pushDriverContext(driverSlot);
+        try {
+            return work.call();
+        } finally {
+            runtimeContext.popDriverContext();
+            freeDriverSlots.add(driverSlot);
+            driverPermits.release();
+        }
+    }
+
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    public int getAvailableDriverPermits() {
+        return driverPermits.availablePermits();
+    }
+
+    /**
+     * Waits up to 30 seconds for running tasks, then closes the drivers of all slots.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30L, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        RuntimeContext runtimeContext = RuntimeContext.getCurrent();
+        for (String driverSlot : driverSlots) {
+            runtimeContext.pushDriverContext(driverSlot);
+            try {
+                driverPool.closeDriver();
+            } finally {
+                runtimeContext.popDriverContext();
+            }
+        }
+        logger.info("{} closed", name);
+    }
+}
@@ -0,0 +1,82 @@
+package de.swatchy2dot0.fetch;
+
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Status, headers and decoded body of a request made by the {@link HttpFetcher}.
+ */
+public class FetchResponse {
+
+    private final String url;
+
+    private final int status;
+
+    private final Map<String, List<String>> headers;
+
+    private final byte[] body;
+
+    private final Charset charset;
+
+    private String text;
+
+    FetchResponse(String url, int status, Map<String, List<String>> headers, byte[] body, Charset charset) {
+        super();
+        this.url = url;
+        this.status = status;
+        this.headers = headers;
+        this.body = body;
+        this.charset = charset;
+    }
+
+    /**
+     * @return the URL after following redirects
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public boolean isSuccessful() {
+        return status >= 200 && status < 300;
+    }
+
+    /**
+     * @return the first value of the header, the name is case insensitive
+     */
+    public String getHeader(String name) {
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    public Map<String, List<String>> getHeaders() {
+        return Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * @return the body without content encoding
+     */
+    public byte[] getBody() {
+        return body;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    public synchronized String getText() {
+        if (text == null) {
+            text = new String(body, charset);
+        }
+        return text;
+    }
+}
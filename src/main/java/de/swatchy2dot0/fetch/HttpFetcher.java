@@ -0,0 +1,324 @@
+package de.swatchy2dot0.fetch;
+
+import org.brotli.dec.BrotliInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Plain HTTP client for static pages and assets.
+ * <p>
+ * Connections are kept alive and reused through the JDK's connection cache: every response body is read to the end
+ * and closed, also for error responses. For many parallel fetches to one host see
+ * {@link #setMaxConnectionsPerHost(int)}. Bodies are requested compressed (gzip, deflate, brotli), streamed into a
+ * buffer that is reused per thread and limited in size, and decoded with the charset from the headers or the page's
+ * meta tag. Every request has a connect, read and total timeout.
+ */
+public class HttpFetcher {
+
+    private final static Logger logger = LoggerFactory.getLogger(HttpFetcher.class);
+
+    private static final int MAX_REDIRECTS = 5;
+
+    private static final int SNIFF_BYTES = 1024;
+
+    private static volatile HttpFetcher instance;
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * only buffers of the initial size are kept per thread, larger bodies get a buffer of their own
+     */
+    private static final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[BUFFER_BYTES]);
+
+    private volatile int connectTimeoutMillis = 10000;
+
+    private volatile int readTimeoutMillis = 20000;
+
+    private volatile long totalTimeoutMillis = 60000L;
+
+    private volatile int maxBodyBytes = 16 * 1024 * 1024;
+
+    private volatile String userAgent = "Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/96.0 Safari/537.36";
+
+    private volatile String acceptLanguage = "de-DE,de;q=0.9";
+
+    public static HttpFetcher getDefault() {
+        if (instance == null) {
+            synchronized (HttpFetcher.class) {
+                if (instance == null) {
+                    instance = new HttpFetcher();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the system property {@code http.maxConnections}. The JDK keeps only 5 idle connections per destination by
+     * default, so more parallel fetches to one host open new connections. The property applies to every
+     * HttpURLConnection of the JVM and is read once, so call this at startup before the first request.
+     */
+    public static void setMaxConnectionsPerHost(int maxConnections) {
+        System.setProperty("http.maxConnections", String.valueOf(maxConnections));
+    }
+
+    public FetchResponse fetch(String url) throws IOException {
+        return fetch(url, Collections.emptyMap(), totalTimeoutMillis);
+    }
+
+    /**
+     * Sends a GET request and follows up to five redirects, also between http and https.
+     *
+     * @param timeoutMillis upper bound for the whole request including redirects and reading the body
+     */
+    public FetchResponse fetch(String url, Map<String, String> headers, long timeoutMillis) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        HttpURLConnection conn = connect(url, headers, deadline);
+        byte[] body = readBody(conn, deadline);
+        Charset charset = detectCharset(conn.getContentType(), body);
+        return new FetchResponse(conn.getURL().toExternalForm(), conn.getResponseCode(), headersOf(conn), body, charset);
+    }
+
+    /**
+     * Like {@link #fetch(String, Map, long)}, but streams the decoded body of a successful response to {@code out}
+     * instead of buffering it, e.g. for images. The body of the returned response is empty.
+     */
+    public FetchResponse download(String url, Map<String, String> headers, long timeoutMillis, OutputStream out) throws IOException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        HttpURLConnection conn = connect(url, headers, deadline);
+        int status = conn.getResponseCode();
+        if (status >= 200 && status < 300) {
+            long length = 0;
+            byte[] buffer = buffers.get();
+            try (InputStream in = decode(conn.getInputStream(), conn.getContentEncoding())) {
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    length += read;
+                    if (length > maxBodyBytes) {
+                        throw new IOException("response of " + conn.getURL() + " exceeds " + maxBodyBytes + " bytes");
+                    }
+                    remainingMillis(deadline, conn.getURL());
+                }
+            }
+        } else {
+            discard(conn);
+        }
+        return new FetchResponse(conn.getURL().toExternalForm(), status, headersOf(conn), new byte[0], StandardCharsets.UTF_8);
+    }
+
+    private HttpURLConnection connect(String url, Map<String, String> headers, long deadline) throws IOException {
+        URL current = new URL(url);
+        for (int redirects = 0; ; redirects++) {
+            HttpURLConnection conn = open(current, headers, deadline);
+            int status = conn.getResponseCode();
+            String location = conn.getHeaderField("Location");
+            if (status >= 300 && status < 400 && status != 304 && location != null && redirects < MAX_REDIRECTS) {
+                discard(conn);
+                current = new URL(current, location);
+                continue;
+            }
+            return conn;
+        }
+    }
+
+    private static Map<String, List<String>> headersOf(HttpURLConnection conn) {
+        Map<String, List<String>> responseHeaders = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : conn.getHeaderFields().entrySet()) {
+            if (header.getKey() != null) {
+                responseHeaders.put(header.getKey(), header.getValue());
+            }
+        }
+        return responseHeaders;
+    }
+
+    public void setTimeouts(int connectTimeoutMillis, int readTimeoutMillis, long totalTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.totalTimeoutMillis = totalTimeoutMillis;
+    }
+
+    /**
+     * Bodies larger than this fail with an IOException instead of filling the heap.
+     */
+    public void setMaxBodyBytes(int maxBodyBytes) {
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    public void setUserAgent(String userAgent) {
+        this.userAgent = userAgent;
+    }
+
+    public void setAcceptLanguage(String acceptLanguage) {
+        this.acceptLanguage = acceptLanguage;
+    }
+
+    private HttpURLConnection open(URL url, Map<String, String> headers, long deadline) throws IOException {
+        int remaining = remainingMillis(deadline, url);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod("GET");
+        conn.setInstanceFollowRedirects(false);
+        conn.setConnectTimeout(Math.min(connectTimeoutMillis, remaining));
+        conn.setReadTimeout(Math.min(readTimeoutMillis, remaining));
+        conn.setRequestProperty("Accept-Encoding", "gzip, deflate, br");
+        conn.setRequestProperty("Accept", "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
+        conn.setRequestProperty("Accept-Language", acceptLanguage);
+        conn.setRequestProperty("User-Agent", userAgent);
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            conn.setRequestProperty(header.getKey(), header.getValue());
+        }
+        return conn;
+    }
+
+    private byte[] readBody(HttpURLConnection conn, long deadline) throws IOException {
+        InputStream raw = conn.getResponseCode() >= 400 ? conn.getErrorStream() : conn.getInputStream();
+        if (raw == null) {
+            return new byte[0];
+        }
+        int limit = maxBodyBytes;
+        byte[] buffer = buffers.get();
+        int length = 0;
+        try (InputStream in = decode(raw, conn.getContentEncoding())) {
+            while (true) {
+                int capacity = Math.min(buffer.length, limit);
+                if (length == capacity) {
+                    if (capacity == limit) {
+                        // a body of exactly the limit is fine, only one more byte is too much
+                        if (in.read() != -1) {
+                            throw new IOException("response of " + conn.getURL() + " exceeds " + limit + " bytes");
+                        }
+                        break;
+                    }
+                    buffer = Arrays.copyOf(buffer, (int) Math.min(limit, buffer.length * 2L));
+                    capacity = buffer.length;
+                }
+                int read = in.read(buffer, length, capacity - length);
+                if (read == -1) {
+                    break;
+                }
+                length += read;
+                remainingMillis(deadline, conn.getURL());
+            }
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static InputStream decode(InputStream raw, String contentEncoding) throws IOException {
+        if (contentEncoding == null) {
+            return raw;
+        }
+        switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+            case "gzip":
+            case "x-gzip":
+                return new GZIPInputStream(raw, 8192);
+            case "deflate":
+                // servers disagree whether deflate means zlib or raw deflate, zlib streams start with 0x78
+                InputStream in = raw.markSupported() ? raw : new BufferedInputStream(raw);
+                in.mark(1);
+                int first = in.read();
+                in.reset();
+                return new InflaterInputStream(in, new Inflater(first != 0x78));
+            case "br":
+                return new BrotliInputStream(raw);
+            default:
+                return raw;
+        }
+    }
+
+    /**
+     * Reads and closes the body so the connection goes back to the keep-alive cache.
+     */
+    private static void discard(HttpURLConnection conn) {
+        try {
+            InputStream in = conn.getResponseCode() >= 400 ? conn.getErrorStream() : conn.getInputStream();
+            if (in != null) {
+                byte[] skip = buffers.get();
+                while (in.read(skip) != -1) {
+                    // drain
+                }
+                in.close();
+            }
+        } catch (IOException ex) {
+            conn.disconnect();
+        }
+    }
+
+    private static int remainingMillis(long deadline, URL url) throws SocketTimeoutException {
+        long remaining = deadline - System.currentTimeMillis();
+        if (remaining <= 0) {
+            throw new SocketTimeoutException("request to " + url + " timed out");
+        }
+        return (int) Math.min(Integer.MAX_VALUE, remaining);
+    }
+
+    /**
+     * Charset from the Content-Type header, a byte order mark or a meta tag in the first kilobyte, UTF-8 otherwise.
+     */
+    static Charset detectCharset(String contentType, byte[] body) {
+        Charset charset = charsetParameter(contentType);
+        if (charset != null) {
+            return charset;
+        }
+        if (body.length >= 3 && (body[0] & 0xff) == 0xef && (body[1] & 0xff) == 0xbb && (body[2] & 0xff) == 0xbf) {
+            return StandardCharsets.UTF_8;
+        }
+        if (body.length >= 2 && (body[0] & 0xff) == 0xfe && (body[1] & 0xff) == 0xff) {
+            return StandardCharsets.UTF_16BE;
+        }
+        if (body.length >= 2 && (body[0] & 0xff) == 0xff && (body[1] & 0xff) == 0xfe) {
+            return StandardCharsets.UTF_16LE;
+        }
+        String head = new String(body, 0, Math.min(body.length, SNIFF_BYTES), StandardCharsets.ISO_8859_1).toLowerCase(Locale.ROOT);
+        int index = head.indexOf("charset=");
+        while (index >= 0) {
+            if (head.lastIndexOf("<meta", index) >= 0) {
+                charset = charsetParameter(head.substring(index));
+                if (charset != null) {
+                    return charset;
+                }
+            }
+            index = head.indexOf("charset=", index + 1);
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private static Charset charsetParameter(String value) {
+        if (value == null) {
+            return null;
+        }
+        int index = value.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (index < 0) {
+            return null;
+        }
+        int start = index + "charset=".length();
+        while (start < value.length() && (value.charAt(start) == '"' || value.charAt(start) == '\'')) {
+            start++;
+        }
+        int end = start;
+        while (end < value.length() && (Character.isLetterOrDigit(value.charAt(end)) || "-_.:".indexOf(value.charAt(end)) >= 0)) {
+            end++;
+        }
+        try {
+            return end > start ? Charset.forName(value.substring(start, end)) : null;
+        } catch (IllegalCharsetNameException | UnsupportedCharsetException ex) {
+            logger.debug("unknown charset in '{}'", value);
+            return null;
+        }
+    }
+}
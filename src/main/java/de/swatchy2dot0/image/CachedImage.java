@@ -0,0 +1,105 @@
+package de.swatchy2dot0.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+/**
+ * An image in the {@link ImageCache}, stored once per distinct content.
+ */
+public class CachedImage {
+
+    private final String url;
+
+    private final String contentHash;
+
+    private final Path file;
+
+    private final long size;
+
+    CachedImage(String url, String contentHash, Path file, long size) {
+        super();
+        this.url = url;
+        this.contentHash = contentHash;
+        this.file = file;
+        this.size = size;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    /**
+     * hex encoded SHA-256 of the image bytes
+     */
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Streams the image as Base64 to {@code out} without holding the image or its encoding in memory. {@code out} is
+     * not closed.
+     */
+    public void writeBase64(OutputStream out) throws IOException {
+        OutputStream base64 = Base64.getEncoder().wrap(new NonClosingOutputStream(out));
+        Files.copy(file, base64);
+        // closing the encoder writes the padding
+        base64.close();
+    }
+
+    public String toBase64() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) (size * 4 / 3 + 4));
+        writeBase64(out);
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    public ImageHandle toHandle() {
+        return ImageHandle.of(file, size);
+    }
+
+    @Override
+    public String toString() {
+        return "CachedImage{url=" + url + ", contentHash=" + contentHash + ", size=" + size + "}";
+    }
+
+    private static final class NonClosingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+
+        NonClosingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package de.swatchy2dot0.image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Content addressed disk cache for downloaded images. Every distinct image is stored once under its SHA-256, no matter
+ * how many URLs point to it; an index maps each URL to its content and the validators (ETag, Last-Modified) needed for
+ * conditional re-validation.
+ * <p>
+ * The index is an append-only file of tab separated lines where the last line of a URL wins; it is compacted when it
+ * is opened. The index file stays open until {@link #close()}.
+ */
+public class ImageCache implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(ImageCache.class);
+
+    private final Path directory;
+
+    private final Path indexFile;
+
+    private final Map<String, Entry> index = new ConcurrentHashMap<>();
+
+    private BufferedWriter indexWriter;
+
+    public ImageCache(Path directory) throws IOException {
+        super();
+        this.directory = directory;
+        this.indexFile = directory.resolve("index.txt");
+        Files.createDirectories(directory.resolve("blobs"));
+        int lines = readIndex();
+        if (lines > index.size()) {
+            compactIndex();
+        }
+        indexWriter = Files.newBufferedWriter(indexFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * @return the cached image of the URL if it is still on disk
+     */
+    public CachedImage get(String url) {
+        Entry entry = index.get(url);
+        if (entry == null || !Files.exists(blobPath(entry.hash))) {
+            return null;
+        }
+        return new CachedImage(url, entry.hash, blobPath(entry.hash), entry.size);
+    }
+
+    public int getUrlCount() {
+        return index.size();
+    }
+
+    Entry entry(String url) {
+        return index.get(url);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Moves a downloaded file into the cache; if the same content is already stored the download is dropped.
+     */
+    CachedImage store(String url, Path download, String hash, long size, String etag, String lastModified) throws IOException {
+        Path blob = blobPath(hash);
+        if (Files.exists(blob)) {
+            Files.deleteIfExists(download);
+        } else {
+            Files.createDirectories(blob.getParent());
+            try {
+                Files.move(download, blob, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException ex) {
+                // stored by a parallel download of another URL
+                Files.deleteIfExists(download);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(download, blob, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Entry entry = new Entry(hash, size, etag, lastModified, System.currentTimeMillis());
+        put(url, entry);
+        return new CachedImage(url, hash, blob, size);
+    }
+
+    CachedImage revalidated(String url, Entry entry) throws IOException {
+        put(url, new Entry(entry.hash, entry.size, entry.etag, entry.lastModified, System.currentTimeMillis()));
+        return new CachedImage(url, entry.hash, blobPath(entry.hash), entry.size);
+    }
+
+    Path blobPath(String hash) {
+        return directory.resolve("blobs").resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private synchronized void put(String url, Entry entry) throws IOException {
+        if (indexWriter == null) {
+            throw new IOException("image cache " + directory + " is closed");
+        }
+        index.put(url, entry);
+        indexWriter.write(line(url, entry));
+        indexWriter.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (indexWriter != null) {
+            indexWriter.close();
+            indexWriter = null;
+        }
+    }
+
+    private int readIndex() throws IOException {
+        if (!Files.exists(indexFile)) {
+            return 0;
+        }
+        List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+        for (String line : lines) {
+            String[] fields = line.split("\t", -1);
+            if (fields.length != 6 || fields[1].length() != 64) {
+                logger.debug("skipping unreadable image index line '{}'", line);
+                continue;
+            }
+            try {
+                index.put(fields[0], new Entry(fields[1], Long.parseLong(fields[2]), emptyToNull(fields[3]),
+                        emptyToNull(fields[4]), Long.parseLong(fields[5])));
+            } catch (NumberFormatException ex) {
+                logger.debug("skipping unreadable image index line '{}'", line);
+            }
+        }
+        return lines.size();
+    }
+
+    private void compactIndex() throws IOException {
+        Path temp = Files.createTempFile(directory, "index", ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Entry> entry : index.entrySet()) {
+                writer.write(line(entry.getKey(), entry.getValue()));
+            }
+        }
+        Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String line(String url, Entry entry) {
+        return url + '\t' + entry.hash + '\t' + entry.size + '\t' + nullToEmpty(entry.etag) + '\t'
+                + nullToEmpty(entry.lastModified) + '\t' + entry.validatedAtMillis + '\n';
+    }
+
+    /**
+     * header values never contain tabs or line breaks, so they are stored unescaped
+     */
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ');
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    static final class Entry {
+
+        final String hash;
+
+        final long size;
+
+        final String etag;
+
+        final String lastModified;
+
+        final long validatedAtMillis;
+
+        Entry(String hash, long size, String etag, String lastModified, long validatedAtMillis) {
+            this.hash = hash;
+            this.size = size;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.validatedAtMillis = validatedAtMillis;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package de.swatchy2dot0.image;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+/**
+ * Reference to an encoded image on disk. Only the path and a few numbers are kept on the heap and serialized; the
+ * image is decoded when it is asked for, optionally subsampled while decoding so large images never exist in full
+ * size in memory.
+ */
+public final class ImageHandle implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static volatile Path spoolDirectory = Paths.get(System.getProperty("java.io.tmpdir"), "swatchy-images");
+
+    private final String path;
+
+    private final long size;
+
+    /**
+     * true if the file was written by {@link #encode(BufferedImage)} and belongs to the handle
+     */
+    private final boolean spooled;
+
+    private volatile int width;
+
+    private volatile int height;
+
+    private ImageHandle(Path path, long size, boolean spooled, int width, int height) {
+        super();
+        this.path = path.toAbsolutePath().toString();
+        this.size = size;
+        this.spooled = spooled;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Handle to an encoded image file that already exists, e.g. a {@link CachedImage}.
+     */
+    public static ImageHandle of(Path file) throws IOException {
+        return of(file, Files.size(file));
+    }
+
+    static ImageHandle of(Path file, long size) {
+        return new ImageHandle(file, size, false, -1, -1);
+    }
+
+    /**
+     * Encodes the image as PNG into the spool directory. The caller can drop its reference to the decoded image
+     * afterwards.
+     */
+    public static ImageHandle encode(BufferedImage image) throws IOException {
+        Path directory = spoolDirectory;
+        Files.createDirectories(directory);
+        Path file = Files.createTempFile(directory, "image", ".png");
+        if (!ImageIO.write(image, "png", file.toFile())) {
+            Files.deleteIfExists(file);
+            throw new IOException("no PNG writer for image type " + image.getType());
+        }
+        return new ImageHandle(file, Files.size(file), true, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Deletes the file of an image encoded by {@link #encode(BufferedImage)}; files the handle was only pointed at,
+     * e.g. by {@link #of(Path)}, are left alone. The handle cannot be decoded afterwards.
+     *
+     * @return true if a file was deleted
+     */
+    public boolean release() {
+        if (!spooled) {
+            return false;
+        }
+        try {
+            return Files.deleteIfExists(getPath());
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Directory for images encoded by {@link #encode(BufferedImage)}, the system temp directory by default. The files
+     * have to outlive the handles, including serialized ones, so they are only deleted by {@link #release()}.
+     */
+    public static void setSpoolDirectory(Path spoolDirectory) {
+        ImageHandle.spoolDirectory = spoolDirectory;
+    }
+
+    public Path getPath() {
+        return Paths.get(path);
+    }
+
+    /**
+     * @return size of the encoded image in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public int getWidth() throws IOException {
+        readDimensions();
+        return width;
+    }
+
+    public int getHeight() throws IOException {
+        readDimensions();
+        return height;
+    }
+
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(getPath());
+    }
+
+    public BufferedImage decode() throws IOException {
+        return decode(Integer.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Decodes the image scaled down to fit into the given size, keeping the aspect ratio. Smaller images are not
+     * enlarged. The decoder reads only every n-th pixel where possible, so memory use depends on the requested size.
+     */
+    public BufferedImage decode(int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(getPath().toFile())) {
+            ImageReader reader = reader(in);
+            try {
+                reader.setInput(in, true, true);
+                int sourceWidth = reader.getWidth(0);
+                int sourceHeight = reader.getHeight(0);
+                height = sourceHeight;
+                width = sourceWidth;
+                double scale = Math.min(1d, Math.min(maxWidth / (double) sourceWidth, maxHeight / (double) sourceHeight));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = (int) Math.floor(1d / scale);
+                if (step > 1) {
+                    param.setSourceSubsampling(step, step, 0, 0);
+                }
+                BufferedImage image = reader.read(0, param);
+                if (scale >= 1d) {
+                    return image;
+                }
+                return scale(image, Math.max(1, (int) Math.round(sourceWidth * scale)),
+                        Math.max(1, (int) Math.round(sourceHeight * scale)));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ImageHandle{path=" + path + ", size=" + size + "}";
+    }
+
+    private void readDimensions() throws IOException {
+        if (width >= 0) {
+            return;
+        }
+        try (ImageInputStream in = ImageIO.createImageInputStream(getPath().toFile())) {
+            ImageReader reader = reader(in);
+            try {
+                reader.setInput(in, true, true);
+                height = reader.getHeight(0);
+                width = reader.getWidth(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private ImageReader reader(ImageInputStream in) throws IOException {
+        if (in == null) {
+            throw new IOException("image " + path + " cannot be read");
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        if (!readers.hasNext()) {
+            throw new IOException("unsupported image format of " + path);
+        }
+        return readers.next();
+    }
+
+    private static BufferedImage scale(BufferedImage image, int targetWidth, int targetHeight) {
+        if (image.getWidth() == targetWidth && image.getHeight() == targetHeight) {
+            return image;
+        }
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, type);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, targetWidth, targetHeight, null);
+        } finally {
+            graphics.dispose();
+        }
+        return scaled;
+    }
+}
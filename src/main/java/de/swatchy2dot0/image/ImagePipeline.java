@@ -0,0 +1,192 @@
+package de.swatchy2dot0.image;
+
+import de.swatchy2dot0.base.AffiliateElement;
+import de.swatchy2dot0.fetch.FetchResponse;
+import de.swatchy2dot0.fetch.HttpFetcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Downloads images in parallel into an {@link ImageCache}.
+ * <p>
+ * At most {@code parallelism} downloads run at the same time, concurrent requests for the same URL share one
+ * download. A cached image is used without network access while it is younger than the max age, after that it is
+ * re-validated with a conditional request and only downloaded again if it changed. Downloads are streamed to disk and
+ * hashed on the way, so an image is never held in memory as a whole.
+ */
+public class ImagePipeline implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(ImagePipeline.class);
+
+    private final ImageCache cache;
+
+    private final HttpFetcher fetcher;
+
+    private final ExecutorService executor;
+
+    private final Map<String, CompletableFuture<CachedImage>> inFlight = new ConcurrentHashMap<>();
+
+    private volatile long maxAgeMillis = TimeUnit.DAYS.toMillis(1);
+
+    private volatile long timeoutMillis = TimeUnit.SECONDS.toMillis(60);
+
+    public ImagePipeline(ImageCache cache, int parallelism) {
+        this(cache, HttpFetcher.getDefault(), parallelism);
+    }
+
+    public ImagePipeline(ImageCache cache, HttpFetcher fetcher, int parallelism) {
+        super();
+        this.cache = cache;
+        this.fetcher = fetcher;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "ImagePipeline-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<CachedImage> fetch(String url) {
+        CompletableFuture<CachedImage> created = new CompletableFuture<>();
+        CompletableFuture<CachedImage> existing = inFlight.putIfAbsent(url, created);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    created.complete(load(url));
+                } catch (Exception ex) {
+                    created.completeExceptionally(ex);
+                } finally {
+                    inFlight.remove(url, created);
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            inFlight.remove(url, created);
+            created.completeExceptionally(ex);
+        }
+        return created;
+    }
+
+    /**
+     * Fetches all images in parallel. The result keeps the order of the URLs; images that failed are logged and left
+     * out.
+     */
+    public CompletableFuture<List<CachedImage>> fetchAll(List<String> urls) {
+        List<CompletableFuture<CachedImage>> futures = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            futures.add(fetch(url).handle((image, ex) -> {
+                if (ex != null) {
+                    logger.warn("image {} could not be loaded: {}", url, ex.getMessage());
+                    return null;
+                }
+                return image;
+            }));
+        }
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<CachedImage> images = new ArrayList<>(futures.size());
+            for (CompletableFuture<CachedImage> future : futures) {
+                CachedImage image = future.join();
+                if (image != null) {
+                    images.add(image);
+                }
+            }
+            return images;
+        });
+    }
+
+    /**
+     * Fetches the large images of the element and attaches them as {@link ImageHandle}s.
+     */
+    public CompletableFuture<AffiliateElement> fetchAll(AffiliateElement element) {
+        return fetchAll(element.getLargeImageUrls()).thenApply(images -> {
+            List<ImageHandle> handles = new ArrayList<>(images.size());
+            for (CachedImage image : images) {
+                handles.add(image.toHandle());
+            }
+            element.setImageHandles(handles);
+            return element;
+        });
+    }
+
+    /**
+     * Cached images younger than this are used without re-validation.
+     */
+    public void setMaxAge(long maxAge, TimeUnit unit) {
+        this.maxAgeMillis = unit.toMillis(maxAge);
+    }
+
+    public void setTimeout(long timeout, TimeUnit unit) {
+        this.timeoutMillis = unit.toMillis(timeout);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private CachedImage load(String url) throws IOException {
+        ImageCache.Entry entry = cache.entry(url);
+        boolean cached = entry != null && Files.exists(cache.blobPath(entry.hash));
+        if (cached && System.currentTimeMillis() - entry.validatedAtMillis < maxAgeMillis) {
+            return cache.get(url);
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Accept", "image/avif,image/webp,image/*,*/*;q=0.8");
+        if (cached && entry.etag != null) {
+            headers.put("If-None-Match", entry.etag);
+        }
+        if (cached && entry.lastModified != null) {
+            headers.put("If-Modified-Since", entry.lastModified);
+        }
+
+        MessageDigest digest = sha256();
+        Path download = Files.createTempFile(cache.getDirectory(), "download", ".tmp");
+        try {
+            FetchResponse response;
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(download), digest)) {
+                response = fetcher.download(url, headers, timeoutMillis, out);
+            }
+            if (response.getStatus() == 304 && cached) {
+                return cache.revalidated(url, entry);
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.getStatus() + " for image " + url);
+            }
+            return cache.store(url, download, hex(digest.digest()), Files.size(download), response.getHeader("ETag"),
+                    response.getHeader("Last-Modified"));
+        } finally {
+            Files.deleteIfExists(download);
+        }
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = Character.forDigit((bytes[i] >> 4) & 0xf, 16);
+            hex[i * 2 + 1] = Character.forDigit(bytes[i] & 0xf, 16);
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,273 @@
+package de.swatchy2dot0.image;
+
+import de.swatchy2dot0.base.AffiliateElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Renders the images of an {@link AffiliateElement} side by side into one JPEG strip and stores it under
+ * {@link AffiliateElement#getImageStripRelativePath()}, relative to a base directory.
+ * <p>
+ * Strips are rendered on a fork-join pool, the images of one strip are decoded and scaled as separate subtasks. Every
+ * image is decoded subsampled to about the tile height, so memory is bounded by parallelism times images per strip
+ * times tile size, independent of the size of the source images.
+ */
+public class ImageStripRenderer implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(ImageStripRenderer.class);
+
+    private final Path baseDirectory;
+
+    private final ForkJoinPool pool;
+
+    private volatile int tileHeight = 300;
+
+    private volatile int maxTileWidth = 600;
+
+    private volatile int maxImages = 5;
+
+    private volatile int gap = 4;
+
+    private volatile Color background = Color.WHITE;
+
+    private volatile float quality = 0.85f;
+
+    public ImageStripRenderer(Path baseDirectory) {
+        this(baseDirectory, Runtime.getRuntime().availableProcessors());
+    }
+
+    public ImageStripRenderer(Path baseDirectory, int parallelism) {
+        super();
+        this.baseDirectory = baseDirectory;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Renders the strip and waits for it.
+     *
+     * @return the written file
+     */
+    public Path render(AffiliateElement element) throws IOException {
+        try {
+            return renderAsync(element).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) ex.getCause()).getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Renders the strip in the background. If the element has no strip path yet, one is derived from its URL and set
+     * on the element.
+     */
+    public CompletableFuture<Path> renderAsync(AffiliateElement element) {
+        CompletableFuture<Path> result = new CompletableFuture<>();
+        if (element.getImageHandles().isEmpty()) {
+            result.completeExceptionally(new IllegalArgumentException("element " + element.getUrl() + " has no images"));
+            return result;
+        }
+        if (element.getImageStripRelativePath() == null) {
+            element.setImageStripRelativePath(defaultRelativePath(element));
+        }
+        Path target = baseDirectory.resolve(element.getImageStripRelativePath());
+        List<ImageHandle> handles = new ArrayList<>(element.getImageHandles());
+        pool.execute(() -> {
+            try {
+                result.complete(new StripTask(handles, target).invoke());
+            } catch (Throwable ex) {
+                // e.g. an OutOfMemoryError decoding a large image, render() and renderAll() would wait forever
+                result.completeExceptionally(ex);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Renders the strips of all elements with images; failures are logged and the element is skipped.
+     *
+     * @return the number of strips written
+     */
+    public int renderAll(List<AffiliateElement> elements) {
+        List<CompletableFuture<Path>> futures = new ArrayList<>(elements.size());
+        for (AffiliateElement element : elements) {
+            if (!element.getImageHandles().isEmpty()) {
+                futures.add(renderAsync(element).whenComplete((path, ex) -> {
+                    if (ex != null) {
+                        logger.warn("image strip of {} could not be rendered: {}", element.getUrl(), ex.getMessage());
+                    }
+                }));
+            }
+        }
+        int written = 0;
+        for (CompletableFuture<Path> future : futures) {
+            try {
+                future.join();
+                written++;
+            } catch (CompletionException ex) {
+                // logged above
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Images are scaled to the tile height, keeping the aspect ratio, but not wider than {@code maxTileWidth}.
+     */
+    public void setTileSize(int tileHeight, int maxTileWidth) {
+        this.tileHeight = tileHeight;
+        this.maxTileWidth = maxTileWidth;
+    }
+
+    public void setMaxImages(int maxImages) {
+        this.maxImages = maxImages;
+    }
+
+    public void setGap(int gap) {
+        this.gap = gap;
+    }
+
+    public void setBackground(Color background) {
+        this.background = background;
+    }
+
+    /**
+     * JPEG quality between 0 and 1
+     */
+    public void setQuality(float quality) {
+        this.quality = quality;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private static String defaultRelativePath(AffiliateElement element) {
+        String key = element.getUrl() != null ? element.getUrl() : String.valueOf(System.identityHashCode(element));
+        byte[] hash = ImagePipeline.sha256().digest(key.getBytes(StandardCharsets.UTF_8));
+        return "strips/" + ImagePipeline.hex(hash).substring(0, 32) + ".jpg";
+    }
+
+    private void write(BufferedImage strip, Path target) throws IOException {
+        Files.createDirectories(target.toAbsolutePath().getParent());
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("jpeg");
+        if (!writers.hasNext()) {
+            throw new IOException("no JPEG writer available");
+        }
+        ImageWriter writer = writers.next();
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "strip", ".tmp");
+        try {
+            try (ImageOutputStream out = ImageIO.createImageOutputStream(temp.toFile())) {
+                writer.setOutput(out);
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(quality);
+                writer.write(null, new IIOImage(strip, null, null), param);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private final class StripTask extends RecursiveTask<Path> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<ImageHandle> handles;
+
+        private final Path target;
+
+        StripTask(List<ImageHandle> handles, Path target) {
+            this.handles = handles;
+            this.target = target;
+        }
+
+        @Override
+        protected Path compute() {
+            int height = tileHeight;
+            List<TileTask> tiles = new ArrayList<>();
+            for (int i = 0; i < handles.size() && i < maxImages; i++) {
+                tiles.add(new TileTask(handles.get(i), maxTileWidth, height));
+            }
+            ForkJoinTask.invokeAll(tiles);
+
+            int width = gap * (tiles.size() - 1);
+            for (TileTask tile : tiles) {
+                width += tile.join().getWidth();
+            }
+            BufferedImage strip = new BufferedImage(Math.max(1, width), height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = strip.createGraphics();
+            try {
+                graphics.setColor(background);
+                graphics.fillRect(0, 0, strip.getWidth(), height);
+                int x = 0;
+                for (TileTask tile : tiles) {
+                    BufferedImage image = tile.join();
+                    graphics.drawImage(image, x, (height - image.getHeight()) / 2, null);
+                    x += image.getWidth() + gap;
+                }
+            } finally {
+                graphics.dispose();
+            }
+            try {
+                write(strip, target);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            return target;
+        }
+    }
+
+    private static final class TileTask extends RecursiveTask<BufferedImage> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final ImageHandle handle;
+
+        private final int maxWidth;
+
+        private final int maxHeight;
+
+        TileTask(ImageHandle handle, int maxWidth, int maxHeight) {
+            this.handle = handle;
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+        }
+
+        @Override
+        protected BufferedImage compute() {
+            try {
+                return handle.decode(maxWidth, maxHeight);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package de.swatchy2dot0.metrics;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Publishes a {@link MetricsRegistry} as MXBean {@code de.swatchy2dot0:type=CrawlerMetrics}, e.g. for JConsole.
+ */
+public class CrawlerMetrics implements CrawlerMetricsMXBean {
+
+    public static final String OBJECT_NAME = "de.swatchy2dot0:type=CrawlerMetrics";
+
+    private final MetricsRegistry registry;
+
+    public CrawlerMetrics(MetricsRegistry registry) {
+        super();
+        this.registry = registry;
+    }
+
+    /**
+     * Registers the default registry with the platform MBean server; calling it again has no effect.
+     */
+    public static void register() {
+        register(MetricsRegistry.getDefault(), OBJECT_NAME);
+    }
+
+    public static void register(MetricsRegistry registry, String objectName) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new CrawlerMetrics(registry), new ObjectName(objectName));
+        } catch (InstanceAlreadyExistsException ex) {
+            // already registered
+        } catch (JMException ex) {
+            throw new IllegalStateException("registering " + objectName + " failed", ex);
+        }
+    }
+
+    @Override
+    public Map<String, Long> getCounts() {
+        return histogramValues(LatencyHistogram::getCount);
+    }
+
+    @Override
+    public Map<String, Double> getMeanMillis() {
+        return histogramValues(LatencyHistogram::getMeanMillis);
+    }
+
+    @Override
+    public Map<String, Double> getP99Millis() {
+        return histogramValues(histogram -> histogram.getQuantileMillis(0.99d));
+    }
+
+    @Override
+    public Map<String, Double> getMaxMillis() {
+        return histogramValues(LatencyHistogram::getMaxMillis);
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        registry.getCounters().forEach((key, value) -> values.put(key.toString(), value));
+        return values;
+    }
+
+    @Override
+    public String scrape() {
+        return PrometheusEndpoint.format(registry);
+    }
+
+    @Override
+    public void reset() {
+        registry.clear();
+    }
+
+    private <T> Map<String, T> histogramValues(Function<LatencyHistogram, T> value) {
+        Map<String, T> values = new LinkedHashMap<>();
+        registry.getHistograms().forEach((key, histogram) -> values.put(key.toString(), value.apply(histogram)));
+        return values;
+    }
+}
@@ -0,0 +1,26 @@
+package de.swatchy2dot0.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of a {@link MetricsRegistry}, the keys are the series as in {@link SeriesKey#toString()}.
+ */
+public interface CrawlerMetricsMXBean {
+
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getMeanMillis();
+
+    Map<String, Double> getP99Millis();
+
+    Map<String, Double> getMaxMillis();
+
+    Map<String, Long> getCounters();
+
+    /**
+     * @return all metrics in the Prometheus text format
+     */
+    String scrape();
+
+    void reset();
+}
@@ -0,0 +1,113 @@
+package de.swatchy2dot0.metrics;
+
+/**
+ * Averages of the {@link PagePerformance} of all pages of one host. Timings the browser did not report are left out
+ * of their average instead of counting as 0.
+ */
+public class HostPerformance {
+
+    private final String host;
+
+    private long pages;
+
+    private final Average dns = new Average();
+
+    private final Average connect = new Average();
+
+    private final Average ttfb = new Average();
+
+    private final Average domContentLoaded = new Average();
+
+    private final Average load = new Average();
+
+    private long transferBytes;
+
+    private long requests;
+
+    private long maxJsHeapBytes = -1;
+
+    HostPerformance(String host) {
+        this.host = host;
+    }
+
+    synchronized void add(PagePerformance page) {
+        pages++;
+        dns.add(page.getDnsMillis());
+        connect.add(page.getConnectMillis());
+        ttfb.add(page.getTtfbMillis());
+        domContentLoaded.add(page.getDomContentLoadedMillis());
+        load.add(page.getLoadMillis());
+        transferBytes += Math.max(0L, page.getTransferBytes());
+        requests += Math.max(0, page.getRequestCount());
+        maxJsHeapBytes = Math.max(maxJsHeapBytes, page.getJsHeapBytes());
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public synchronized long getPages() {
+        return pages;
+    }
+
+    public synchronized double getMeanDnsMillis() {
+        return dns.mean();
+    }
+
+    public synchronized double getMeanConnectMillis() {
+        return connect.mean();
+    }
+
+    public synchronized double getMeanTtfbMillis() {
+        return ttfb.mean();
+    }
+
+    public synchronized double getMeanDomContentLoadedMillis() {
+        return domContentLoaded.mean();
+    }
+
+    public synchronized double getMeanLoadMillis() {
+        return load.mean();
+    }
+
+    public synchronized long getTransferBytes() {
+        return transferBytes;
+    }
+
+    public synchronized double getMeanTransferBytes() {
+        return pages == 0 ? 0d : transferBytes / (double) pages;
+    }
+
+    public synchronized double getMeanRequests() {
+        return pages == 0 ? 0d : requests / (double) pages;
+    }
+
+    public synchronized long getMaxJsHeapBytes() {
+        return maxJsHeapBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%s: %d pages, dns=%.0f ms, connect=%.0f ms, ttfb=%.0f ms, domContentLoaded=%.0f ms, load=%.0f ms, %.0f bytes and %.1f requests per page",
+                host, pages, dns.mean(), connect.mean(), ttfb.mean(), domContentLoaded.mean(), load.mean(),
+                getMeanTransferBytes(), getMeanRequests());
+    }
+
+    private static final class Average {
+
+        private double sum;
+
+        private long count;
+
+        void add(double value) {
+            if (value >= 0) {
+                sum += value;
+                count++;
+            }
+        }
+
+        double mean() {
+            return count == 0 ? -1d : sum / count;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package de.swatchy2dot0.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and event counters of the crawler, tagged by driver context and host.
+ * <p>
+ * The number of series is capped: once {@link #setMaxSeries(int) maxSeries} is reached, new series are folded into
+ * driver context and host {@code other}, so per task driver contexts cannot exhaust the heap.
+ */
+public class MetricsRegistry {
+
+    private final static Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    public static final String NAVIGATION = "navigation";
+
+    public static final String ELEMENT_LOOKUP = "element_lookup";
+
+    public static final String WAIT = "wait";
+
+    public static final String CLICK = "click";
+
+    public static final String SCREENSHOT = "screenshot";
+
+    public static final String DRIVER_CREATION = "driver_creation";
+
+    public static final String DRIVER_RECYCLING = "driver_recycling";
+
+    private static final String OTHER = "other";
+
+    private static volatile MetricsRegistry instance;
+
+    private final Map<SeriesKey, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private final Map<SeriesKey, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private volatile int maxSeries = 10000;
+
+    private volatile boolean overflowLogged = false;
+
+    public static MetricsRegistry getDefault() {
+        if (instance == null) {
+            synchronized (MetricsRegistry.class) {
+                if (instance == null) {
+                    instance = new MetricsRegistry();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return the host of the URL, empty if it has none
+     */
+    public static String hostOf(String url) {
+        try {
+            String host = url == null ? null : URI.create(url).getHost();
+            return host == null ? "" : host;
+        } catch (IllegalArgumentException ex) {
+            return "";
+        }
+    }
+
+    public void recordLatency(String operation, String driverContext, String host, long nanos) {
+        histogram(new SeriesKey(operation, driverContext, host)).record(nanos);
+    }
+
+    public void increment(String event, String driverContext, String host) {
+        counter(new SeriesKey(event, driverContext, host)).increment();
+    }
+
+    public LatencyHistogram histogram(SeriesKey key) {
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            histogram = histograms.computeIfAbsent(cap(key, histograms), ignored -> new LatencyHistogram());
+        }
+        return histogram;
+    }
+
+    public LongAdder counter(SeriesKey key) {
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            counter = counters.computeIfAbsent(cap(key, counters), ignored -> new LongAdder());
+        }
+        return counter;
+    }
+
+    private SeriesKey cap(SeriesKey key, Map<SeriesKey, ?> series) {
+        if (series.size() < maxSeries) {
+            return key;
+        }
+        if (!overflowLogged) {
+            overflowLogged = true;
+            logger.warn("more than {} metric series, further driver contexts and hosts are counted as '{}'", maxSeries, OTHER);
+        }
+        return new SeriesKey(key.getName(), OTHER, OTHER);
+    }
+
+    /**
+     * @return the histograms sorted by name, driver context and host
+     */
+    public Map<SeriesKey, LatencyHistogram> getHistograms() {
+        return sorted(histograms);
+    }
+
+    public Map<SeriesKey, Long> getCounters() {
+        Map<SeriesKey, Long> values = new TreeMap<>(MetricsRegistry::compare);
+        counters.forEach((key, counter) -> values.put(key, counter.sum()));
+        return Collections.unmodifiableMap(values);
+    }
+
+    public void setMaxSeries(int maxSeries) {
+        this.maxSeries = maxSeries;
+    }
+
+    public void clear() {
+        histograms.clear();
+        counters.clear();
+        overflowLogged = false;
+    }
+
+    private static <V> Map<SeriesKey, V> sorted(Map<SeriesKey, V> series) {
+        Map<SeriesKey, V> copy = new TreeMap<>(MetricsRegistry::compare);
+        copy.putAll(series);
+        return Collections.unmodifiableMap(copy);
+    }
+
+    private static int compare(SeriesKey a, SeriesKey b) {
+        int result = a.getName().compareTo(b.getName());
+        if (result == 0) {
+            result = a.getDriverContext().compareTo(b.getDriverContext());
+        }
+        return result != 0 ? result : a.getHost().compareTo(b.getHost());
+    }
+}
@@ -0,0 +1,118 @@
+package de.swatchy2dot0.metrics;
+
+import java.util.Map;
+
+/**
+ * Navigation timings and resource usage of one page load as reported by the browser. Timings are in milliseconds
+ * from the start of the navigation, -1 if the browser did not report them (yet), e.g. the load event of a page
+ * that is still loading.
+ */
+public class PagePerformance {
+
+    private final long timestampMillis;
+
+    private final String url;
+
+    private final String host;
+
+    private final double dnsMillis;
+
+    private final double connectMillis;
+
+    private final double ttfbMillis;
+
+    private final double domContentLoadedMillis;
+
+    private final double loadMillis;
+
+    private final long transferBytes;
+
+    private final int requestCount;
+
+    private final long jsHeapBytes;
+
+    public PagePerformance(String url, double dnsMillis, double connectMillis, double ttfbMillis,
+                           double domContentLoadedMillis, double loadMillis, long transferBytes, int requestCount,
+                           long jsHeapBytes) {
+        this.timestampMillis = System.currentTimeMillis();
+        this.url = url;
+        this.host = MetricsRegistry.hostOf(url);
+        this.dnsMillis = dnsMillis;
+        this.connectMillis = connectMillis;
+        this.ttfbMillis = ttfbMillis;
+        this.domContentLoadedMillis = domContentLoadedMillis;
+        this.loadMillis = loadMillis;
+        this.transferBytes = transferBytes;
+        this.requestCount = requestCount;
+        this.jsHeapBytes = jsHeapBytes;
+    }
+
+    /**
+     * Reads the values returned by the collecting script, missing values become -1.
+     */
+    public static PagePerformance fromMap(Map<String, Object> values) {
+        Object url = values.get("url");
+        return new PagePerformance(url == null ? "" : url.toString(), number(values, "dns"), number(values, "connect"),
+                number(values, "ttfb"), number(values, "domContentLoaded"), number(values, "load"),
+                (long) number(values, "transferBytes"), (int) number(values, "requests"), (long) number(values, "jsHeap"));
+    }
+
+    private static double number(Map<String, Object> values, String key) {
+        Object value = values.get(key);
+        return value instanceof Number ? ((Number) value).doubleValue() : -1d;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public double getDnsMillis() {
+        return dnsMillis;
+    }
+
+    public double getConnectMillis() {
+        return connectMillis;
+    }
+
+    /**
+     * @return time from sending the request to the first response byte
+     */
+    public double getTtfbMillis() {
+        return ttfbMillis;
+    }
+
+    public double getDomContentLoadedMillis() {
+        return domContentLoadedMillis;
+    }
+
+    public double getLoadMillis() {
+        return loadMillis;
+    }
+
+    /**
+     * @return bytes transferred for the document and its resources; cached resources and cross-origin resources
+     * without {@code Timing-Allow-Origin} count 0
+     */
+    public long getTransferBytes() {
+        return transferBytes;
+    }
+
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return used JS heap, -1 if the browser does not expose it
+     */
+    public long getJsHeapBytes() {
+        return jsHeapBytes;
+    }
+}
@@ -0,0 +1,137 @@
+package de.swatchy2dot0.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates {@link PagePerformance} per host and appends every page as a tab separated line to a rolling file.
+ * <p>
+ * Once the file exceeds {@code maxBytes} it is renamed to {@code <file>.1}, older files move up by one and the oldest
+ * beyond {@code maxFiles} is deleted. Every file starts with a header line.
+ */
+public class PagePerformanceLog implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(PagePerformanceLog.class);
+
+    private static final String HEADER = "timestamp\thost\turl\tdnsMillis\tconnectMillis\tttfbMillis\tdomContentLoadedMillis\tloadMillis\ttransferBytes\trequests\tjsHeapBytes\n";
+
+    private final Path file;
+
+    private final long maxBytes;
+
+    private final int maxFiles;
+
+    private final Map<String, HostPerformance> hosts = new ConcurrentHashMap<>();
+
+    private Writer writer;
+
+    private long size;
+
+    public PagePerformanceLog(Path file) {
+        this(file, 16L * 1024L * 1024L, 5);
+    }
+
+    public PagePerformanceLog(Path file, long maxBytes, int maxFiles) {
+        super();
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    public void record(PagePerformance page) {
+        hosts.computeIfAbsent(page.getHost(), HostPerformance::new).add(page);
+        String line = String.format(Locale.ROOT, "%d\t%s\t%s\t%.1f\t%.1f\t%.1f\t%.1f\t%.1f\t%d\t%d\t%d\n",
+                page.getTimestampMillis(), page.getHost(), page.getUrl().replaceAll("[\t\r\n]", " "),
+                page.getDnsMillis(), page.getConnectMillis(), page.getTtfbMillis(), page.getDomContentLoadedMillis(),
+                page.getLoadMillis(), page.getTransferBytes(), page.getRequestCount(), page.getJsHeapBytes());
+        try {
+            write(line);
+        } catch (IOException ex) {
+            logger.warn("writing page performance to {} failed: {}", file, ex.getMessage());
+        }
+    }
+
+    private synchronized void write(String line) throws IOException {
+        if (writer == null) {
+            open();
+        } else if (size >= maxBytes) {
+            roll();
+        }
+        writer.write(line);
+        writer.flush();
+        size += line.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        size = Files.exists(file) ? Files.size(file) : 0L;
+        writer = new BufferedWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND));
+        if (size == 0) {
+            writer.write(HEADER);
+            size = HEADER.length();
+        }
+    }
+
+    private void roll() throws IOException {
+        writer.close();
+        writer = null;
+        Files.deleteIfExists(rolled(maxFiles - 1));
+        for (int i = maxFiles - 2; i >= 1; i--) {
+            Path older = rolled(i);
+            if (Files.exists(older)) {
+                Files.move(older, rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles > 1) {
+            Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(file);
+        }
+        open();
+    }
+
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    /**
+     * @return the aggregates sorted by host
+     */
+    public Map<String, HostPerformance> getHostPerformance() {
+        return Collections.unmodifiableMap(new TreeMap<>(hosts));
+    }
+
+    /**
+     * Logs the aggregate of every host, slowest mean load first.
+     */
+    public void logSummary() {
+        hosts.values().stream()
+                .sorted((a, b) -> Double.compare(b.getMeanLoadMillis(), a.getMeanLoadMillis()))
+                .forEach(host -> logger.info("{}", host));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
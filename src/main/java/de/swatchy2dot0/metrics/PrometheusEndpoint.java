@@ -0,0 +1,125 @@
+package de.swatchy2dot0.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Serves a {@link MetricsRegistry} in the Prometheus text format on {@code http://127.0.0.1:<port>/metrics}.
+ * <p>
+ * Latencies are exported as histogram {@code crawler_operation_seconds} with the labels {@code operation},
+ * {@code driver_context} and {@code host}, events as counter {@code crawler_events_total} with the label
+ * {@code event} instead of {@code operation}.
+ */
+public class PrometheusEndpoint implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(PrometheusEndpoint.class);
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final MetricsRegistry registry;
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "PrometheusEndpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param port 0 for any free port
+     */
+    public PrometheusEndpoint(MetricsRegistry registry, int port) throws IOException {
+        super();
+        this.registry = registry;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public PrometheusEndpoint start() {
+        server.start();
+        logger.info("metrics available at http://{}:{}/metrics", server.getAddress().getHostString(), getPort());
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            byte[] body = format(registry).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public static String format(MetricsRegistry registry) {
+        StringBuilder text = new StringBuilder(4096);
+        long[] bounds = LatencyHistogram.getBoundsMillis();
+
+        text.append("# HELP crawler_operation_seconds Latency of crawler operations.\n");
+        text.append("# TYPE crawler_operation_seconds histogram\n");
+        for (Map.Entry<SeriesKey, LatencyHistogram> series : registry.getHistograms().entrySet()) {
+            String labels = labels("operation", series.getKey());
+            LatencyHistogram histogram = series.getValue();
+            long[] counts = histogram.getBucketCounts();
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                String le = i < bounds.length ? seconds(bounds[i] / 1000d) : "+Inf";
+                text.append("crawler_operation_seconds_bucket{").append(labels).append(",le=\"").append(le).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            text.append("crawler_operation_seconds_sum{").append(labels).append("} ")
+                    .append(seconds(histogram.getSumNanos() / 1e9)).append('\n');
+            text.append("crawler_operation_seconds_count{").append(labels).append("} ")
+                    .append(cumulative).append('\n');
+        }
+
+        text.append("# HELP crawler_events_total Events of the crawler, e.g. errors and page crashes.\n");
+        text.append("# TYPE crawler_events_total counter\n");
+        for (Map.Entry<SeriesKey, Long> series : registry.getCounters().entrySet()) {
+            text.append("crawler_events_total{").append(labels("event", series.getKey())).append("} ")
+                    .append(series.getValue()).append('\n');
+        }
+        return text.toString();
+    }
+
+    private static String labels(String nameLabel, SeriesKey key) {
+        return nameLabel + "=\"" + escape(key.getName()) + "\",driver_context=\"" + escape(key.getDriverContext())
+                + "\",host=\"" + escape(key.getHost()) + "\"";
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static String seconds(double value) {
+        return String.format(Locale.ROOT, "%.6f", value).replaceAll("0+$", "").replaceAll("\\.$", ".0");
+    }
+}
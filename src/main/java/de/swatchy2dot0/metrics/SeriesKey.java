@@ -0,0 +1,55 @@
+package de.swatchy2dot0.metrics;
+
+import java.util.Objects;
+
+/**
+ * Name of a metric series, e.g. an operation or event, with its driver context and host.
+ */
+public final class SeriesKey {
+
+    private final String name;
+
+    private final String driverContext;
+
+    private final String host;
+
+    public SeriesKey(String name, String driverContext, String host) {
+        this.name = name;
+        this.driverContext = driverContext == null ? "" : driverContext;
+        this.host = host == null ? "" : host;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDriverContext() {
+        return driverContext;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof SeriesKey)) {
+            return false;
+        }
+        SeriesKey key = (SeriesKey) other;
+        return name.equals(key.name) && driverContext.equals(key.driverContext) && host.equals(key.host);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, driverContext, host);
+    }
+
+    @Override
+    public String toString() {
+        return name + "{driverContext=" + driverContext + ", host=" + host + "}";
+    }
+}
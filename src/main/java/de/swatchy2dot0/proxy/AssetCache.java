@@ -0,0 +1,269 @@
+package de.swatchy2dot0.proxy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Size bounded disk cache of responses, evicting the least recently used entries.
+ * <p>
+ * Every response is one file named after the hash of its key. The LRU order lives in memory and is rebuilt from the
+ * file modification times when the cache is opened, a hit touches the file.
+ */
+public class AssetCache {
+
+    private final static Logger logger = LoggerFactory.getLogger(AssetCache.class);
+
+    private static final int MAGIC = 0x53574331;
+
+    private static final String SUFFIX = ".entry";
+
+    private final Path directory;
+
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long totalBytes;
+
+    private volatile int maxEntryBytes;
+
+    public AssetCache(Path directory, long maxBytes) throws IOException {
+        super();
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = (int) Math.min(32L * 1024L * 1024L, Math.max(1L, maxBytes / 8));
+        Files.createDirectories(directory);
+        load();
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSizeBytes() {
+        return totalBytes;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getMaxEntryBytes() {
+        return maxEntryBytes;
+    }
+
+    /**
+     * Larger responses are passed through without being cached, an eighth of the cache size up to 32 MB by default.
+     */
+    public void setMaxEntryBytes(int maxEntryBytes) {
+        this.maxEntryBytes = maxEntryBytes;
+    }
+
+    public synchronized void clear() throws IOException {
+        for (Entry entry : entries.values()) {
+            Files.deleteIfExists(entry.file);
+        }
+        entries.clear();
+        totalBytes = 0;
+    }
+
+    /**
+     * @return the fresh response for the key, null if there is none or it expired
+     */
+    CachedResponse get(String key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAtMillis <= System.currentTimeMillis()) {
+                remove(key, entry);
+                return null;
+            }
+        }
+        try {
+            CachedResponse response = read(entry.file, key);
+            Files.setLastModifiedTime(entry.file, FileTime.fromMillis(System.currentTimeMillis()));
+            return response;
+        } catch (IOException ex) {
+            logger.debug("dropping unreadable cache entry {}: {}", entry.file, ex.getMessage());
+            synchronized (this) {
+                remove(key, entry);
+            }
+            return null;
+        }
+    }
+
+    void put(String key, CachedResponse response) throws IOException {
+        if (response.body.length > maxEntryBytes) {
+            return;
+        }
+        Path file = directory.resolve(hash(key) + SUFFIX);
+        Path temp = Files.createTempFile(directory, "entry", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                writeString(out, key);
+                out.writeLong(response.expiresAtMillis);
+                out.writeInt(response.status);
+                writeString(out, response.reason);
+                out.writeInt(response.headers.size());
+                for (String[] header : response.headers) {
+                    writeString(out, header[0]);
+                    writeString(out, header[1]);
+                }
+                out.writeInt(response.body.length);
+                out.write(response.body);
+            }
+            long size = Files.size(temp);
+            synchronized (this) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                Entry previous = entries.put(key, new Entry(file, size, response.expiresAtMillis));
+                if (previous != null) {
+                    totalBytes -= previous.size;
+                }
+                totalBytes += size;
+                evict();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Entry entry = eldest.next().getValue();
+            eldest.remove();
+            totalBytes -= entry.size;
+            delete(entry.file);
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            totalBytes -= entry.size;
+            delete(entry.file);
+        }
+    }
+
+    private void load() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Map<Path, Long> modified = new HashMap<>();
+        for (Path file : files) {
+            modified.put(file, Files.getLastModifiedTime(file).toMillis());
+        }
+        files.sort(Comparator.comparing(modified::get));
+        long now = System.currentTimeMillis();
+        for (Path file : files) {
+            String key;
+            long expiresAtMillis;
+            long size;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 4096))) {
+                if (in.readInt() != MAGIC) {
+                    throw new IOException("not a cache entry");
+                }
+                key = readString(in);
+                expiresAtMillis = in.readLong();
+                size = Files.size(file);
+            } catch (IOException ex) {
+                logger.debug("dropping unreadable cache entry {}: {}", file, ex.getMessage());
+                delete(file);
+                continue;
+            }
+            if (expiresAtMillis <= now) {
+                delete(file);
+                continue;
+            }
+            entries.put(key, new Entry(file, size, expiresAtMillis));
+            totalBytes += size;
+        }
+        evict();
+        logger.debug("asset cache {} opened with {} entries, {} bytes", directory, entries.size(), totalBytes);
+    }
+
+    private static CachedResponse read(Path file, String key) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || !key.equals(readString(in))) {
+                throw new IOException("cache entry does not match its key");
+            }
+            long expiresAtMillis = in.readLong();
+            int status = in.readInt();
+            String reason = readString(in);
+            int headerCount = in.readInt();
+            List<String[]> headers = new ArrayList<>(headerCount);
+            for (int i = 0; i < headerCount; i++) {
+                headers.add(new String[]{readString(in), readString(in)});
+            }
+            byte[] body = new byte[in.readInt()];
+            in.readFully(body);
+            return new CachedResponse(status, reason, headers, body, expiresAtMillis);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > 1024 * 1024) {
+            throw new IOException("corrupt cache entry");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ex) {
+            logger.debug("cache entry {} could not be deleted: {}", file, ex.getMessage());
+        }
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(64);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final class Entry {
+
+        final Path file;
+
+        final long size;
+
+        final long expiresAtMillis;
+
+        Entry(Path file, long size, long expiresAtMillis) {
+            this.file = file;
+            this.size = size;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
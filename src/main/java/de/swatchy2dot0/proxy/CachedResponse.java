@@ -0,0 +1,30 @@
+package de.swatchy2dot0.proxy;
+
+import java.util.List;
+
+/**
+ * Status, end-to-end headers and encoded body of a response in the {@link AssetCache}.
+ */
+final class CachedResponse {
+
+    final int status;
+
+    final String reason;
+
+    /**
+     * name and value pairs in the order of the origin response
+     */
+    final List<String[]> headers;
+
+    final byte[] body;
+
+    final long expiresAtMillis;
+
+    CachedResponse(int status, String reason, List<String[]> headers, byte[] body, long expiresAtMillis) {
+        this.status = status;
+        this.reason = reason;
+        this.headers = headers;
+        this.body = body;
+        this.expiresAtMillis = expiresAtMillis;
+    }
+}
@@ -0,0 +1,660 @@
+package de.swatchy2dot0.proxy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP proxy on the loopback interface that keeps cacheable static responses in an {@link AssetCache} shared by all
+ * Chrome instances, see {@link de.swatchy2dot0.base.ChromeDriverPool#setCachingProxy(CachingProxy)}.
+ * <p>
+ * A response is cached if it is a 200 to a GET without cookies being set, not marked {@code no-store},
+ * {@code no-cache} or {@code private}, and either has a max-age or expiry date or, without any caching headers, a
+ * static file extension like {@code .js}, {@code .css} or {@code .woff2}. Everything else is passed through.
+ * <p>
+ * HTTPS requests arrive as CONNECT tunnels. Without TLS interception they are tunneled unchanged and bypass the cache;
+ * with {@link #enableTlsInterception(Path)} the proxy terminates TLS with a self-signed certificate, which Chrome only
+ * accepts with {@code --ignore-certificate-errors}, and caches HTTPS responses as well.
+ */
+public class CachingProxy implements AutoCloseable {
+
+    private final static Logger logger = LoggerFactory.getLogger(CachingProxy.class);
+
+    private static final Set<String> HOP_BY_HOP_HEADERS = new HashSet<>(Arrays.asList("connection", "keep-alive",
+            "proxy-authenticate", "proxy-authorization", "proxy-connection", "te", "trailer", "transfer-encoding",
+            "upgrade", "content-length", "host"));
+
+    private static final Pattern MAX_AGE = Pattern.compile("(?:s-maxage|max-age)\\s*=\\s*(\\d+)");
+
+    private static final Pattern STATIC_PATH = Pattern.compile(
+            "\\.(?:js|mjs|css|png|jpe?g|gif|webp|avif|svg|ico|woff2?|ttf|otf|eot)$", Pattern.CASE_INSENSITIVE);
+
+    private static final String KEY_STORE_PASSWORD = "changeit";
+
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final AssetCache cache;
+
+    private final ProxyStatistics statistics = new ProxyStatistics();
+
+    private final ExecutorService connections;
+
+    private ServerSocket serverSocket;
+
+    private volatile SSLSocketFactory interceptionSocketFactory;
+
+    private volatile long heuristicMaxAgeMillis = TimeUnit.DAYS.toMillis(1);
+
+    private volatile int connectTimeoutMillis = 10000;
+
+    private volatile int readTimeoutMillis = 30000;
+
+    public CachingProxy(AssetCache cache) {
+        super();
+        this.cache = cache;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "CachingProxy-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Listens on a free port of the loopback interface.
+     * <p>
+     * Unless set already, this sets the system property {@code sun.net.http.allowRestrictedHeaders} to {@code true}
+     * so headers like {@code Origin} and {@code Referer} reach the origin. The property is JVM-wide and read only once,
+     * by the first {@link java.net.HttpURLConnection}, so start the proxy before anything else opens one.
+     */
+    public synchronized CachingProxy start() throws IOException {
+        if (serverSocket != null) {
+            return this;
+        }
+        if (System.getProperty("sun.net.http.allowRestrictedHeaders") == null) {
+            System.setProperty("sun.net.http.allowRestrictedHeaders", "true");
+        }
+        serverSocket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "CachingProxy-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("caching proxy listening on {}", getAddress());
+        return this;
+    }
+
+    /**
+     * Terminates CONNECT tunnels with a self-signed certificate kept in {@code keyStoreDirectory}, generated with the
+     * JDK's keytool on first use, so HTTPS responses can be cached too.
+     */
+    public CachingProxy enableTlsInterception(Path keyStoreDirectory) throws IOException {
+        Path keyStoreFile = keyStoreDirectory.resolve("caching-proxy.p12");
+        if (!Files.exists(keyStoreFile)) {
+            generateKeyStore(keyStoreFile);
+        }
+        try (InputStream in = Files.newInputStream(keyStoreFile)) {
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            keyStore.load(in, KEY_STORE_PASSWORD.toCharArray());
+            KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagers.init(keyStore, KEY_STORE_PASSWORD.toCharArray());
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(keyManagers.getKeyManagers(), null, null);
+            interceptionSocketFactory = sslContext.getSocketFactory();
+        } catch (GeneralSecurityException ex) {
+            throw new IOException("key store " + keyStoreFile + " cannot be used: " + ex.getMessage(), ex);
+        }
+        return this;
+    }
+
+    public boolean isTlsInterception() {
+        return interceptionSocketFactory != null;
+    }
+
+    /**
+     * @return host and port for Chrome's {@code --proxy-server}
+     */
+    public synchronized String getAddress() {
+        if (serverSocket == null) {
+            throw new IllegalStateException("caching proxy is not started");
+        }
+        return serverSocket.getInetAddress().getHostAddress() + ":" + serverSocket.getLocalPort();
+    }
+
+    public synchronized int getPort() {
+        return serverSocket == null ? -1 : serverSocket.getLocalPort();
+    }
+
+    public ProxyStatistics getStatistics() {
+        return statistics;
+    }
+
+    public AssetCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Freshness of static files whose response has no caching headers at all, one day by default.
+     */
+    public void setHeuristicMaxAge(long maxAge, TimeUnit unit) {
+        this.heuristicMaxAgeMillis = unit.toMillis(maxAge);
+    }
+
+    public void setTimeouts(int connectTimeoutMillis, int readTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        this.readTimeoutMillis = readTimeoutMillis;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ex) {
+                logger.debug("closing caching proxy failed: {}", ex.getMessage());
+            }
+        }
+        connections.shutdownNow();
+    }
+
+    private void accept() {
+        ServerSocket server;
+        synchronized (this) {
+            server = serverSocket;
+        }
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                connections.execute(() -> handle(socket));
+            } catch (IOException ex) {
+                if (!server.isClosed()) {
+                    logger.warn("caching proxy cannot accept connections: {}", ex.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Socket socket) {
+        try (Socket client = socket) {
+            client.setSoTimeout(readTimeoutMillis * 2);
+            client.setTcpNoDelay(true);
+            serve(client, new BufferedInputStream(client.getInputStream()),
+                    new BufferedOutputStream(client.getOutputStream()), null);
+        } catch (IOException ex) {
+            logger.trace("proxy connection closed: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Serves requests of one client connection until it is closed.
+     *
+     * @param origin scheme and authority of a terminated CONNECT tunnel, null for plain proxy requests
+     */
+    private void serve(Socket client, InputStream in, OutputStream out, String origin) throws IOException {
+        while (true) {
+            Request request = Request.read(in);
+            if (request == null) {
+                return;
+            }
+            if ("CONNECT".equals(request.method)) {
+                connect(client, request, out);
+                return;
+            }
+            String url = origin == null ? request.target : origin + request.target;
+            if (!url.startsWith("http://") && !url.startsWith("https://")) {
+                writeError(out, 400, "Bad Request", "proxy requests need an absolute URL");
+                return;
+            }
+            if (!forward(request, url, out)) {
+                return;
+            }
+        }
+    }
+
+    private void connect(Socket client, Request request, OutputStream out) throws IOException {
+        String authority = request.target;
+        int colon = authority.lastIndexOf(':');
+        String host = colon > 0 ? authority.substring(0, colon) : authority;
+        int port = colon > 0 ? Integer.parseInt(authority.substring(colon + 1)) : 443;
+        SSLSocketFactory socketFactory = interceptionSocketFactory;
+
+        if (socketFactory == null) {
+            try (Socket upstream = new Socket()) {
+                upstream.connect(new InetSocketAddress(host, port), connectTimeoutMillis);
+                out.write("HTTP/1.1 200 Connection Established\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                out.flush();
+                tunnel(client, upstream);
+            } catch (IOException ex) {
+                statistics.recordError();
+                writeError(out, 502, "Bad Gateway", "cannot connect to " + authority);
+            }
+            return;
+        }
+
+        out.write("HTTP/1.1 200 Connection Established\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+        SSLSocket tls = (SSLSocket) socketFactory.createSocket(client, host, port, false);
+        tls.setUseClientMode(false);
+        tls.startHandshake();
+        String origin = "https://" + (port == 443 ? host : authority);
+        serve(tls, new BufferedInputStream(tls.getInputStream()), new BufferedOutputStream(tls.getOutputStream()), origin);
+    }
+
+    private void tunnel(Socket client, Socket upstream) throws IOException {
+        Thread upload = new Thread(() -> {
+            try {
+                copy(client.getInputStream(), upstream.getOutputStream());
+            } catch (IOException ex) {
+                // one side closed the tunnel
+            } finally {
+                closeQuietly(upstream);
+            }
+        }, Thread.currentThread().getName() + "-upload");
+        upload.setDaemon(true);
+        upload.start();
+        try {
+            client.setSoTimeout(0);
+            upstream.setSoTimeout(0);
+            copy(upstream.getInputStream(), client.getOutputStream());
+        } catch (IOException ex) {
+            // one side closed the tunnel
+        } finally {
+            closeQuietly(client);
+        }
+    }
+
+    /**
+     * Answers a request from the cache or the origin.
+     *
+     * @return true if the client connection can be used for another request
+     */
+    private boolean forward(Request request, String url, OutputStream out) throws IOException {
+        statistics.recordRequest();
+        boolean keepAlive = request.keepAlive();
+        boolean head = "HEAD".equals(request.method);
+        boolean cacheable = ("GET".equals(request.method) || head)
+                && request.header("Range") == null && request.header("Authorization") == null;
+        String key = cacheable ? url + " " + nullToEmpty(request.header("Accept-Encoding")) : null;
+
+        if (cacheable) {
+            CachedResponse cached = cache.get(key);
+            if (cached != null) {
+                statistics.recordHit(cached.body.length);
+                writeHead(out, cached.status, cached.reason, cached.headers, keepAlive);
+                writeHeader(out, "Content-Length", String.valueOf(cached.body.length));
+                out.write(CRLF);
+                if (!head) {
+                    out.write(cached.body);
+                }
+                out.flush();
+                return keepAlive;
+            }
+            statistics.recordMiss();
+        }
+
+        HttpURLConnection conn;
+        int status;
+        try {
+            conn = open(url, request);
+            status = conn.getResponseCode();
+        } catch (IOException ex) {
+            statistics.recordError();
+            logger.debug("proxy request to {} failed: {}", url, ex.getMessage());
+            writeError(out, 502, "Bad Gateway", ex.getMessage());
+            return false;
+        }
+
+        List<String[]> headers = new ArrayList<>();
+        for (Map.Entry<String, List<String>> header : conn.getHeaderFields().entrySet()) {
+            if (header.getKey() != null && !HOP_BY_HOP_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))) {
+                for (String value : header.getValue()) {
+                    headers.add(new String[]{header.getKey(), value});
+                }
+            }
+        }
+        String reason = conn.getResponseMessage() == null ? "" : conn.getResponseMessage();
+        long expiresAtMillis = cacheable && !head ? freshUntil(url, status, conn) : 0L;
+        boolean noBody = head || status == 204 || status == 304 || status < 200;
+        long contentLength = conn.getContentLengthLong();
+
+        writeHead(out, status, reason, headers, keepAlive);
+        InputStream body = status >= 400 ? conn.getErrorStream() : (noBody ? null : conn.getInputStream());
+        if (noBody) {
+            if (head && contentLength >= 0) {
+                writeHeader(out, "Content-Length", String.valueOf(contentLength));
+            } else if (!head) {
+                writeHeader(out, "Content-Length", "0");
+            }
+            out.write(CRLF);
+            out.flush();
+            if (body != null) {
+                drain(body);
+            }
+            return keepAlive;
+        }
+        if (body == null) {
+            writeHeader(out, "Content-Length", "0");
+            out.write(CRLF);
+            out.flush();
+            return keepAlive;
+        }
+
+        boolean chunked = contentLength < 0;
+        writeHeader(out, chunked ? "Transfer-Encoding" : "Content-Length", chunked ? "chunked" : String.valueOf(contentLength));
+        out.write(CRLF);
+
+        int maxEntryBytes = cache.getMaxEntryBytes();
+        ByteArrayOutputStream copy = expiresAtMillis > 0 && contentLength <= maxEntryBytes
+                ? new ByteArrayOutputStream(contentLength > 0 ? (int) contentLength : 8192) : null;
+        byte[] buffer = new byte[16 * 1024];
+        long transferred = 0;
+        try (InputStream in = body) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (chunked) {
+                    out.write((Integer.toHexString(read) + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    out.write(buffer, 0, read);
+                    out.write(CRLF);
+                } else {
+                    out.write(buffer, 0, read);
+                }
+                transferred += read;
+                if (copy != null) {
+                    if (copy.size() + read > maxEntryBytes) {
+                        copy = null;
+                    } else {
+                        copy.write(buffer, 0, read);
+                    }
+                }
+            }
+        }
+        if (chunked) {
+            out.write("0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+        }
+        out.flush();
+        statistics.recordOriginBytes(transferred);
+
+        if (copy != null && (contentLength < 0 || copy.size() == contentLength)) {
+            try {
+                cache.put(key, new CachedResponse(status, reason, headers, copy.toByteArray(), expiresAtMillis));
+                statistics.recordStored();
+            } catch (IOException ex) {
+                logger.warn("response of {} could not be cached: {}", url, ex.getMessage());
+            }
+        }
+        return keepAlive;
+    }
+
+    private HttpURLConnection open(String url, Request request) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection(Proxy.NO_PROXY);
+        conn.setRequestMethod(request.method);
+        conn.setInstanceFollowRedirects(false);
+        conn.setUseCaches(false);
+        conn.setConnectTimeout(connectTimeoutMillis);
+        conn.setReadTimeout(readTimeoutMillis);
+        for (String[] header : request.headers) {
+            if (!HOP_BY_HOP_HEADERS.contains(header[0].toLowerCase(Locale.ROOT))) {
+                conn.addRequestProperty(header[0], header[1]);
+            }
+        }
+        if (request.body.length > 0) {
+            conn.setDoOutput(true);
+            conn.setFixedLengthStreamingMode(request.body.length);
+            try (OutputStream body = conn.getOutputStream()) {
+                body.write(request.body);
+            }
+        }
+        return conn;
+    }
+
+    /**
+     * @return until when the response may be served from the cache, 0 if it must not be cached
+     */
+    private long freshUntil(String url, int status, HttpURLConnection conn) {
+        if (status != 200 || conn.getHeaderField("Set-Cookie") != null) {
+            return 0L;
+        }
+        String vary = conn.getHeaderField("Vary");
+        if (vary != null && !vary.trim().equalsIgnoreCase("Accept-Encoding")) {
+            return 0L;
+        }
+        long now = System.currentTimeMillis();
+        String cacheControl = nullToEmpty(conn.getHeaderField("Cache-Control")).toLowerCase(Locale.ROOT);
+        if (cacheControl.contains("no-store") || cacheControl.contains("no-cache") || cacheControl.contains("private")) {
+            return 0L;
+        }
+        Matcher maxAge = MAX_AGE.matcher(cacheControl);
+        if (maxAge.find()) {
+            long seconds = Long.parseLong(maxAge.group(1));
+            return seconds > 0 ? now + TimeUnit.SECONDS.toMillis(seconds) : 0L;
+        }
+        if (conn.getHeaderField("Expires") != null) {
+            long expires = conn.getExpiration();
+            return expires > now ? expires : 0L;
+        }
+        String path = url;
+        int end = path.indexOf('?');
+        if (end >= 0) {
+            path = path.substring(0, end);
+        }
+        return STATIC_PATH.matcher(path).find() ? now + heuristicMaxAgeMillis : 0L;
+    }
+
+    private static void generateKeyStore(Path keyStoreFile) throws IOException {
+        Files.createDirectories(keyStoreFile.toAbsolutePath().getParent());
+        Path keytool = Paths.get(System.getProperty("java.home"), "bin", "keytool");
+        Process process = new ProcessBuilder(keytool.toString(), "-genkeypair", "-alias", "caching-proxy",
+                "-keyalg", "RSA", "-keysize", "2048", "-validity", "3650", "-dname", "CN=swatchy caching proxy",
+                "-storetype", "PKCS12", "-keystore", keyStoreFile.toString(),
+                "-storepass", KEY_STORE_PASSWORD, "-keypass", KEY_STORE_PASSWORD)
+                .redirectErrorStream(true).start();
+        try (InputStream output = process.getInputStream()) {
+            drain(output);
+        }
+        try {
+            if (!process.waitFor(60, TimeUnit.SECONDS) || process.exitValue() != 0 || !Files.exists(keyStoreFile)) {
+                throw new IOException("keytool could not create " + keyStoreFile);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while creating " + keyStoreFile);
+        }
+    }
+
+    private static void writeHead(OutputStream out, int status, String reason, List<String[]> headers, boolean keepAlive) throws IOException {
+        out.write(("HTTP/1.1 " + status + " " + reason + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        for (String[] header : headers) {
+            writeHeader(out, header[0], header[1]);
+        }
+        writeHeader(out, "Connection", keepAlive ? "keep-alive" : "close");
+    }
+
+    private static void writeHeader(OutputStream out, String name, String value) throws IOException {
+        out.write((name + ": " + value + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static void writeError(OutputStream out, int status, String reason, String message) throws IOException {
+        byte[] body = nullToEmpty(message).getBytes(StandardCharsets.UTF_8);
+        out.write(("HTTP/1.1 " + status + " " + reason + "\r\nContent-Type: text/plain; charset=utf-8\r\nContent-Length: "
+                + body.length + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.write(body);
+        out.flush();
+    }
+
+    private static void copy(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[16 * 1024];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+            out.flush();
+        }
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (in.read(buffer) != -1) {
+            // discard
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ex) {
+            // already closed
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * A request read from a client connection, including its body.
+     */
+    private static final class Request {
+
+        final String method;
+
+        final String target;
+
+        final String version;
+
+        final List<String[]> headers;
+
+        final byte[] body;
+
+        private Request(String method, String target, String version, List<String[]> headers, byte[] body) {
+            this.method = method;
+            this.target = target;
+            this.version = version;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        /**
+         * @return null if the client closed the connection
+         */
+        static Request read(InputStream in) throws IOException {
+            String requestLine = readLine(in);
+            while (requestLine != null && requestLine.isEmpty()) {
+                requestLine = readLine(in);
+            }
+            if (requestLine == null) {
+                return null;
+            }
+            String[] parts = requestLine.split(" ");
+            if (parts.length != 3) {
+                throw new IOException("malformed request line '" + requestLine + "'");
+            }
+            List<String[]> headers = new ArrayList<>();
+            String line;
+            while ((line = readLine(in)) != null && !line.isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    headers.add(new String[]{line.substring(0, colon).trim(), line.substring(colon + 1).trim()});
+                }
+            }
+            return new Request(parts[0], parts[1], parts[2], headers, readBody(in, headers));
+        }
+
+        String header(String name) {
+            return header(headers, name);
+        }
+
+        boolean keepAlive() {
+            String connection = header("Proxy-Connection") != null ? header("Proxy-Connection") : header("Connection");
+            if ("HTTP/1.0".equals(version)) {
+                return "keep-alive".equalsIgnoreCase(connection);
+            }
+            return !"close".equalsIgnoreCase(connection);
+        }
+
+        private static String header(List<String[]> headers, String name) {
+            for (String[] header : headers) {
+                if (header[0].equalsIgnoreCase(name)) {
+                    return header[1];
+                }
+            }
+            return null;
+        }
+
+        private static byte[] readBody(InputStream in, List<String[]> headers) throws IOException {
+            String transferEncoding = header(headers, "Transfer-Encoding");
+            if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                while (true) {
+                    String sizeLine = readLine(in);
+                    if (sizeLine == null) {
+                        throw new EOFException("chunked request body ended early");
+                    }
+                    int extension = sizeLine.indexOf(';');
+                    int size = Integer.parseInt((extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim(), 16);
+                    if (size == 0) {
+                        while ((sizeLine = readLine(in)) != null && !sizeLine.isEmpty()) {
+                            // trailer
+                        }
+                        return body.toByteArray();
+                    }
+                    byte[] chunk = new byte[size];
+                    readFully(in, chunk);
+                    body.write(chunk);
+                    readLine(in);
+                }
+            }
+            String contentLength = header(headers, "Content-Length");
+            if (contentLength == null) {
+                return new byte[0];
+            }
+            byte[] body = new byte[Integer.parseInt(contentLength.trim())];
+            readFully(in, body);
+            return body;
+        }
+
+        private static void readFully(InputStream in, byte[] target) throws IOException {
+            int offset = 0;
+            while (offset < target.length) {
+                int read = in.read(target, offset, target.length - offset);
+                if (read == -1) {
+                    throw new EOFException("request body ended early");
+                }
+                offset += read;
+            }
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1) {
+                if (c == '\n') {
+                    int length = line.length();
+                    return length > 0 && line.charAt(length - 1) == '\r' ? line.substring(0, length - 1) : line.toString();
+                }
+                if (line.length() >= MAX_LINE_LENGTH) {
+                    throw new IOException("request line or header too long");
+                }
+                line.append((char) c);
+            }
+            return line.length() == 0 ? null : line.toString();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package de.swatchy2dot0.proxy;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of a {@link CachingProxy}. Hits and misses only count cacheable requests (GET and HEAD without range or
+ * authorization), everything else is passed through.
+ */
+public class ProxyStatistics {
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong stored = new AtomicLong();
+
+    private final AtomicLong bytesFromCache = new AtomicLong();
+
+    private final AtomicLong bytesFromOrigin = new AtomicLong();
+
+    private final AtomicLong errors = new AtomicLong();
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return responses written to the cache
+     */
+    public long getStored() {
+        return stored.get();
+    }
+
+    public long getBytesFromCache() {
+        return bytesFromCache.get();
+    }
+
+    public long getBytesFromOrigin() {
+        return bytesFromOrigin.get();
+    }
+
+    /**
+     * @return requests answered with 502 because the origin could not be reached
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return hits per cacheable request, 0 before the first one
+     */
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0d : hitCount / (double) total;
+    }
+
+    void recordRequest() {
+        requests.incrementAndGet();
+    }
+
+    void recordHit(long bytes) {
+        hits.incrementAndGet();
+        bytesFromCache.addAndGet(bytes);
+    }
+
+    void recordMiss() {
+        misses.incrementAndGet();
+    }
+
+    void recordStored() {
+        stored.incrementAndGet();
+    }
+
+    void recordOriginBytes(long bytes) {
+        bytesFromOrigin.addAndGet(bytes);
+    }
+
+    void recordError() {
+        errors.incrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ProxyStatistics{requests=%d, hits=%d, misses=%d, hitRate=%.2f, stored=%d, bytesFromCache=%d, bytesFromOrigin=%d, errors=%d}",
+                getRequests(), getHits(), getMisses(), getHitRate(), getStored(), getBytesFromCache(), getBytesFromOrigin(), getErrors());
+    }
+}
@@ -0,0 +1,176 @@
+package de.swatchy2dot0.base;
+
+import de.swatchy2dot0.metrics.HostPerformance;
+import de.swatchy2dot0.metrics.PagePerformanceLog;
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+import org.openqa.selenium.By;
+import org.openqa.selenium.SearchContext;
+import org.openqa.selenium.WebElement;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AbstractCrawlerTest {
+
+    @Test
+    public void translatesLocatorsForTheAnyOfScript() {
+        List<List<String>> locators = AbstractCrawler.scriptLocators(By.id("price"), By.name("q"),
+                By.className("offer"), By.tagName("h1"), By.cssSelector("div > span.price"),
+                By.xpath("//div[@id='a: b']"), By.linkText("Weiter"), By.partialLinkText("Wei"));
+
+        assertEquals(Arrays.asList(
+                Arrays.asList("id", "price"), Arrays.asList("name", "q"), Arrays.asList("className", "offer"),
+                Arrays.asList("tagName", "h1"), Arrays.asList("cssSelector", "div > span.price"),
+                Arrays.asList("xpath", "//div[@id='a: b']"), Arrays.asList("linkText", "Weiter"),
+                Arrays.asList("partialLinkText", "Wei")), locators);
+    }
+
+    @Test
+    public void locatorsWithoutScriptFormFallBack() {
+        By custom = new By() {
+            @Override
+            public List<WebElement> findElements(SearchContext context) {
+                return null;
+            }
+        };
+        assertNull(AbstractCrawler.scriptLocators(By.id("a"), custom));
+    }
+
+    @Test
+    public void readsPagePerformanceOnlyAfterTheLoadEvent() throws Exception {
+        Path directory = Files.createTempDirectory("page-performance");
+        ChromeDriverPool pool = new ChromeDriverPool(0, 1);
+        try (FakeChromeDriver chrome = new FakeChromeDriver(30000L);
+             PagePerformanceLog performanceLog = new PagePerformanceLog(directory.resolve("pages.tsv"))) {
+            Map<String, Object> performance = new HashMap<>();
+            performance.put("url", "https://shop.example/");
+            performance.put("transferBytes", 4096L);
+            performance.put("requests", 12L);
+            chrome.setScriptResults(script -> script.contains("usedJSHeapSize") ? performance
+                    : script.contains("reach(") ? Arrays.asList("LOAD", false) : "complete");
+            AbstractCrawler crawler = crawlerOn(pool, chrome);
+            crawler.pagePerformanceLog = performanceLog;
+
+            crawler.goToUrl("https://shop.example/");
+
+            List<String> scripts = chrome.getScripts();
+            int awaitLoad = indexOf(scripts, "reach(");
+            int readPerformance = indexOf(scripts, "usedJSHeapSize");
+            assertTrue(awaitLoad >= 0);
+            assertTrue(awaitLoad < readPerformance);
+            HostPerformance host = performanceLog.getHostPerformance().get("shop.example");
+            assertEquals(4096L, host.getTransferBytes());
+        } finally {
+            pool.shutdown();
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test
+    public void readsPagePerformanceRightAwayWithoutLoadDetector() throws Exception {
+        Path directory = Files.createTempDirectory("page-performance");
+        ChromeDriverPool pool = new ChromeDriverPool(0, 1);
+        try (FakeChromeDriver chrome = new FakeChromeDriver(30000L);
+             PagePerformanceLog performanceLog = new PagePerformanceLog(directory.resolve("pages.tsv"))) {
+            chrome.setScriptResults(script -> script.contains("usedJSHeapSize")
+                    ? Collections.singletonMap("url", "https://shop.example/") : "complete");
+            AbstractCrawler crawler = crawlerOn(pool, chrome);
+            crawler.pagePerformanceLog = performanceLog;
+            crawler.performanceLoadDetector = null;
+
+            crawler.goToUrl("https://shop.example/");
+
+            assertEquals(-1, indexOf(chrome.getScripts(), "reach("));
+            assertEquals(1L, performanceLog.getHostPerformance().get("shop.example").getPages());
+        } finally {
+            pool.shutdown();
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test
+    public void takeScreenshotReturnsOnceTheFileIsWritten() throws Exception {
+        Path directory = Files.createTempDirectory("screenshots");
+        ChromeDriverPool pool = new ChromeDriverPool(0, 1);
+        try (FakeChromeDriver chrome = new FakeChromeDriver(30000L)) {
+            chrome.setScriptResults(script -> "complete");
+            AbstractCrawler crawler = crawlerOn(pool, chrome);
+
+            crawler.takeScreenshot(directory.resolve("page").toString());
+            assertArrayEquals(FakeChromeDriver.SCREENSHOT, Files.readAllBytes(directory.resolve("page.png")));
+
+            Path notADirectory = Files.createFile(directory.resolve("file"));
+            try {
+                crawler.takeScreenshot(notADirectory.resolve("page").toString());
+                fail("writing below a file must fail");
+            } catch (IOException ex) {
+                // expected
+            }
+        } finally {
+            pool.shutdown();
+            FileUtils.deleteDirectory(directory.toFile());
+        }
+    }
+
+    @Test
+    public void stepWaitingForAStepOfItsOwnContextDoesNotDeadlock() throws Exception {
+        ChromeDriverPool pool = new ChromeDriverPool(0, 1);
+        try {
+            AbstractCrawler crawler = new AbstractCrawler(pool) {
+            };
+            List<String> order = new CopyOnWriteArrayList<>();
+
+            CompletableFuture<String> outer = crawler.onDriver(() -> {
+                order.add("outer");
+                return crawler.onDriver(() -> {
+                    order.add("inner");
+                    return "inner";
+                }).get(5L, TimeUnit.SECONDS);
+            });
+            CompletableFuture<Object> next = crawler.onDriver(() -> order.add("next"));
+
+            assertEquals("inner", outer.get(5L, TimeUnit.SECONDS));
+            next.get(5L, TimeUnit.SECONDS);
+            assertEquals(Arrays.asList("outer", "inner", "next"), order);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static AbstractCrawler crawlerOn(ChromeDriverPool pool, FakeChromeDriver chrome) {
+        pool.setDriverFactory((withImages, downloadPath) -> {
+            try {
+                return chrome.connect();
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+        return new AbstractCrawler(pool) {
+        };
+    }
+
+    private static int indexOf(List<String> scripts, String fragment) {
+        for (int i = 0; i < scripts.size(); i++) {
+            if (scripts.get(i).contains(fragment)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,84 @@
+package de.swatchy2dot0.base;
+
+import de.swatchy2dot0.image.ImageHandle;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AffiliateElementTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path spool;
+
+    @Before
+    public void setUp() throws Exception {
+        spool = folder.newFolder("spool").toPath();
+        ImageHandle.setSpoolDirectory(spool);
+    }
+
+    @After
+    public void tearDown() {
+        ImageHandle.setSpoolDirectory(Paths.get(System.getProperty("java.io.tmpdir"), "swatchy-images"));
+    }
+
+    @Test
+    public void clearReleasesImagesWithoutDecoding() throws Exception {
+        AffiliateElement element = new AffiliateElement();
+        element.setDownloadedImages(Arrays.asList(image(10), image(20), image(30)));
+        assertEquals(3, spoolFiles());
+        // decoding an unreadable file would fail
+        Files.write(element.getImageHandles().get(1).getPath(), new byte[]{1, 2, 3});
+
+        element.getDownloadedImages().clear();
+
+        assertTrue(element.getImageHandles().isEmpty());
+        assertEquals(0, spoolFiles());
+    }
+
+    @Test
+    public void removeAndSetReleaseThePreviousImage() throws Exception {
+        AffiliateElement element = new AffiliateElement();
+        element.setDownloadedImages(Arrays.asList(image(10), image(20)));
+        List<BufferedImage> images = element.getDownloadedImages();
+
+        assertEquals(10, images.remove(0).getWidth());
+        assertEquals(20, images.set(0, image(40)).getWidth());
+
+        assertEquals(1, spoolFiles());
+        assertEquals(40, images.get(0).getWidth());
+    }
+
+    @Test
+    public void releaseKeepsFilesNotWrittenByTheHandle() throws Exception {
+        File file = folder.newFile("cached.png");
+        assertFalse(ImageHandle.of(file.toPath()).release());
+        assertTrue(file.exists());
+    }
+
+    private long spoolFiles() throws Exception {
+        try (Stream<Path> files = Files.list(spool)) {
+            return files.count();
+        }
+    }
+
+    private static BufferedImage image(int width) {
+        return new BufferedImage(width, 5, BufferedImage.TYPE_INT_RGB);
+    }
+}
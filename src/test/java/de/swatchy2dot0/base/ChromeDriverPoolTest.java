@@ -0,0 +1,174 @@
+package de.swatchy2dot0.base;
+
+import org.junit.After;
+import org.junit.Test;
+import org.openqa.selenium.WebDriver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ChromeDriverPoolTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Set<WebDriver> quit = ConcurrentHashMap.newKeySet();
+
+    private ChromeDriverPool pool;
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void startsDriversOfDifferentContextsConcurrently() throws Exception {
+        pool = new ChromeDriverPool(0, 2);
+        CountDownLatch bothStarting = new CountDownLatch(2);
+        AtomicInteger starting = new AtomicInteger();
+        AtomicInteger maxStarting = new AtomicInteger();
+        pool.setDriverFactory((withImages, downloadPath) -> {
+            maxStarting.accumulateAndGet(starting.incrementAndGet(), Math::max);
+            bothStarting.countDown();
+            try {
+                // a serialized creation never lets the second one start while the first is waiting here
+                bothStarting.await(5L, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            starting.decrementAndGet();
+            return StubDrivers.create();
+        });
+
+        Future<WebDriver> first = executor.submit(() -> driverOf("first"));
+        Future<WebDriver> second = executor.submit(() -> driverOf("second"));
+
+        assertNotSame(first.get(10L, TimeUnit.SECONDS), second.get(10L, TimeUnit.SECONDS));
+        assertEquals(2, maxStarting.get());
+        assertEquals(2, pool.getDriverCount());
+    }
+
+    @Test
+    public void leaseTimesOutWhileReplacementHoldsTheLastSlot() throws Exception {
+        WebDriver retired = retireDriverOfContext("a");
+
+        long startNanos = System.nanoTime();
+        try {
+            pool.lease(300L, TimeUnit.MILLISECONDS);
+            fail("lease must time out");
+        } catch (WebsiteWorkflowException ex) {
+            assertTrue(ex.getMessage().startsWith("no ChromeDriver available within 300 ms"));
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) < 5000L);
+        assertFalse(quit.contains(retired));
+    }
+
+    @Test
+    public void recyclingQuitsRetiredDriverAndFreesItsPermit() throws Exception {
+        WebDriver retired = retireDriverOfContext("a");
+
+        WebDriver fresh = RuntimeContext.getCurrent().run("a", false, () -> {
+            pool.recycleIfDue();
+            return pool.driver(true);
+        });
+
+        assertNotSame(retired, fresh);
+        assertTrue(quit.contains(retired));
+        assertEquals(1, pool.getDriverCount());
+        DriverLease lease = pool.lease(1L, TimeUnit.SECONDS);
+        assertNotSame(fresh, lease.getDriver());
+        pool.release(lease);
+    }
+
+    @Test
+    public void forgetsTheHostOfAContextWithItsDriver() throws Exception {
+        pool = new ChromeDriverPool(0, 1);
+        pool.setDriverFactory((withImages, downloadPath) -> StubDrivers.create(quit));
+
+        String host = RuntimeContext.getCurrent().run("task-1", false, () -> {
+            pool.driver(true);
+            pool.setCurrentHost("task-1", "shop.example");
+            return pool.getCurrentHost("task-1");
+        });
+        assertEquals("shop.example", host);
+
+        RuntimeContext.getCurrent().run("task-1", false, () -> {
+            pool.closeDriver();
+            return null;
+        });
+        assertEquals("", pool.getCurrentHost("task-1"));
+    }
+
+    @Test
+    public void releaseClearsCookiesOfAllSitesAndStorageOfVisitedOrigins() throws Exception {
+        pool = new ChromeDriverPool(0, 1);
+        try (FakeChromeDriver chrome = new FakeChromeDriver(30000L)) {
+            Map<String, Object> history = new HashMap<>();
+            history.put("currentIndex", 1L);
+            history.put("entries", Arrays.asList(Collections.singletonMap("url", "about:blank"),
+                    Collections.singletonMap("url", "https://shop.example/cart"),
+                    Collections.singletonMap("url", "https://shop.example/checkout")));
+            chrome.setDevToolsResults(command -> "Page.getNavigationHistory".equals(command) ? history : Collections.emptyMap());
+            WebDriver driver = chrome.connect();
+            pool.setDriverFactory((withImages, downloadPath) -> driver);
+
+            DriverLease lease = pool.lease(1L, TimeUnit.SECONDS);
+            pool.release(lease);
+
+            List<String> commands = new ArrayList<>();
+            List<Object> clearedOrigins = new ArrayList<>();
+            for (Map<String, Object> command : chrome.getDevToolsCommands()) {
+                commands.add((String) command.get("cmd"));
+                if ("Storage.clearDataForOrigin".equals(command.get("cmd"))) {
+                    clearedOrigins.add(((Map<?, ?>) command.get("params")).get("origin"));
+                }
+            }
+            assertTrue(commands.contains("Network.clearBrowserCookies"));
+            assertEquals(Collections.singletonList("https://shop.example"), clearedOrigins);
+            assertEquals(1, pool.getIdleCount());
+            assertSame(driver, pool.lease(1L, TimeUnit.SECONDS).getDriver());
+        }
+    }
+
+    /**
+     * Binds a driver to the context in a pool of two and retires it, the replacement takes the second slot.
+     */
+    private WebDriver retireDriverOfContext(String driverContext) throws Exception {
+        pool = new ChromeDriverPool(0, 2);
+        pool.setDriverFactory((withImages, downloadPath) -> StubDrivers.create(quit));
+        pool.setRecyclingThresholds(1L, 0L, 0L, 0L, TimeUnit.MILLISECONDS);
+        WebDriver driver = driverOf(driverContext);
+        pool.recordNavigation(driver);
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (pool.getDriverCount() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+        assertEquals(2, pool.getDriverCount());
+        return driver;
+    }
+
+    private WebDriver driverOf(String driverContext) throws Exception {
+        return RuntimeContext.getCurrent().run(driverContext, false, () -> pool.driver(true));
+    }
+}
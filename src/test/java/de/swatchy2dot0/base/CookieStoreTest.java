@@ -0,0 +1,164 @@
+package de.swatchy2dot0.base;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.Cookie;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CookieStoreTest {
+
+    private static final Date EXPIRY = new Date((System.currentTimeMillis() / 1000L + 86400L) * 1000L);
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("cookies").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void reloadsFlushedCookiesAndDeletes() throws Exception {
+        CookieStore store = new CookieStore(directory);
+        Cookie session = new Cookie("session", "abc", "shop.example", "/", null, true, true);
+        Cookie cart = new Cookie("cart", "3", "shop.example", "/cart", EXPIRY);
+        store.update("a", Arrays.asList(session, cart));
+        store.flush("a");
+        store.update("a", Collections.singletonList(new Cookie("session", "def", "shop.example", "/", null, true, true)));
+        store.flush("a");
+
+        String journal = new String(Files.readAllBytes(journal("a").toPath()), StandardCharsets.UTF_8);
+        assertTrue(journal, journal.contains("D\tshop.example\t/cart\tcart\n"));
+
+        Map<String, Cookie> reloaded = byName(new CookieStore(directory).load("a"));
+        assertEquals(1, reloaded.size());
+        Cookie cookie = reloaded.get("session");
+        assertEquals("def", cookie.getValue());
+        assertEquals("shop.example", cookie.getDomain());
+        assertEquals("/", cookie.getPath());
+        assertNull(cookie.getExpiry());
+        assertTrue(cookie.isSecure());
+        assertTrue(cookie.isHttpOnly());
+    }
+
+    @Test
+    public void keepsExpiryAndDropsExpiredCookies() {
+        CookieStore store = new CookieStore(directory);
+        Date past = new Date((System.currentTimeMillis() / 1000L - 60L) * 1000L);
+        store.update("a", Arrays.asList(new Cookie("fresh", "1", "shop.example", "/", EXPIRY),
+                new Cookie("stale", "2", "shop.example", "/", past)));
+        store.flush("a");
+
+        Map<String, Cookie> reloaded = byName(new CookieStore(directory).load("a"));
+        assertEquals(Collections.singleton("fresh"), reloaded.keySet());
+        assertEquals(EXPIRY, reloaded.get("fresh").getExpiry());
+    }
+
+    @Test
+    public void compactsOnceTheJournalOutgrowsTheSnapshot() throws Exception {
+        CookieStore store = new CookieStore(directory);
+        for (int i = 1; i <= 64; i++) {
+            store.update("a", Collections.singletonList(new Cookie("counter", String.valueOf(i), "shop.example", "/", null)));
+            store.flush("a");
+        }
+        assertEquals(64, Files.readAllLines(journal("a").toPath()).size());
+        assertFalse(snapshot("a").exists());
+
+        store.update("a", Collections.singletonList(new Cookie("counter", "65", "shop.example", "/", null)));
+        store.flush("a");
+
+        assertFalse(journal("a").exists());
+        assertEquals(Arrays.asList("# cookies v1", "S\tshop.example\t/\tcounter\t65\t\t0"),
+                Files.readAllLines(snapshot("a").toPath()));
+        assertEquals("65", byName(new CookieStore(directory).load("a")).get("counter").getValue());
+    }
+
+    @Test
+    public void ignoresALastLineThatWasCutOff() throws Exception {
+        CookieStore store = new CookieStore(directory);
+        store.update("a", Collections.singletonList(new Cookie("session", "abc", "shop.example", "/", null)));
+        store.flush("a");
+        Files.write(journal("a").toPath(), "S\tshop.example\t/\tcart\t".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        CookieStore reopened = new CookieStore(directory);
+        assertEquals(Collections.singleton("session"), byName(reopened.load("a")).keySet());
+
+        // the broken line must not swallow the next record appended to the journal
+        reopened.update("a", Arrays.asList(new Cookie("session", "abc", "shop.example", "/", null),
+                new Cookie("cart", "3", "shop.example", "/", null)));
+        reopened.flush("a");
+        Map<String, Cookie> reloaded = byName(new CookieStore(directory).load("a"));
+        assertEquals(2, reloaded.size());
+        assertEquals("3", reloaded.get("cart").getValue());
+    }
+
+    @Test
+    public void escapesTabsAndBackslashesInValues() {
+        CookieStore store = new CookieStore(directory);
+        String value = "a\tb\\c\\td\\";
+        store.update("a", Collections.singletonList(new Cookie("tricky", value, "shop.example", "/path\\x", null)));
+        store.flush("a");
+
+        Cookie cookie = byName(new CookieStore(directory).load("a")).get("tricky");
+        assertEquals(value, cookie.getValue());
+        assertEquals("/path\\x", cookie.getPath());
+    }
+
+    @Test
+    public void migratesLegacySerializedCookies() throws Exception {
+        File legacy = new File(directory, "a_Cookies.data");
+        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(legacy))) {
+            out.writeObject(new Cookie("session", "abc", "shop.example", "/", null));
+            out.writeObject(new Cookie("cart", "3", "shop.example", "/cart", EXPIRY));
+        }
+
+        Map<String, Cookie> migrated = byName(new CookieStore(directory).load("a"));
+
+        assertEquals(2, migrated.size());
+        assertEquals("abc", migrated.get("session").getValue());
+        assertEquals(EXPIRY, migrated.get("cart").getExpiry());
+        assertFalse(legacy.exists());
+        assertTrue(snapshot("a").exists());
+        assertEquals(2, new CookieStore(directory).load("a").size());
+    }
+
+    private File snapshot(String identity) {
+        return new File(directory, identity + "_Cookies.txt");
+    }
+
+    private File journal(String identity) {
+        return new File(directory, identity + "_Cookies.journal");
+    }
+
+    private static Map<String, Cookie> byName(List<Cookie> cookies) {
+        Map<String, Cookie> byName = new HashMap<>();
+        for (Cookie cookie : cookies) {
+            byName.put(cookie.getName(), cookie);
+        }
+        return byName;
+    }
+}
@@ -0,0 +1,149 @@
+package de.swatchy2dot0.base;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * Minimal W3C WebDriver endpoint for tests: it keeps the timeouts and URL of one session and answers scripts and
+ * DevTools commands with a function of the script source or command name.
+ */
+final class FakeChromeDriver implements AutoCloseable {
+
+    private static final Json json = new Json();
+
+    /**
+     * bytes of every screenshot taken
+     */
+    static final byte[] SCREENSHOT = {(byte) 0x89, 'P', 'N', 'G'};
+
+    private final HttpServer server;
+
+    private final List<Long> scriptTimeouts = new CopyOnWriteArrayList<>();
+
+    private final List<String> scripts = new CopyOnWriteArrayList<>();
+
+    private volatile long scriptTimeout;
+
+    private volatile String currentUrl = "about:blank";
+
+    private volatile Function<String, Object> scriptResults = script -> null;
+
+    private final List<Map<String, Object>> devToolsCommands = new CopyOnWriteArrayList<>();
+
+    private volatile Function<String, Object> devToolsResults = command -> Collections.emptyMap();
+
+    FakeChromeDriver(long scriptTimeout) throws IOException {
+        this.scriptTimeout = scriptTimeout;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.start();
+    }
+
+    RemoteWebDriver connect() throws IOException {
+        InetSocketAddress address = server.getAddress();
+        return new RemoteWebDriver(new URL("http://" + address.getHostString() + ":" + address.getPort()), new ChromeOptions());
+    }
+
+    void setScriptResults(Function<String, Object> scriptResults) {
+        this.scriptResults = scriptResults;
+    }
+
+    void setDevToolsResults(Function<String, Object> devToolsResults) {
+        this.devToolsResults = devToolsResults;
+    }
+
+    /**
+     * @return the bodies of all DevTools commands, each with {@code cmd} and {@code params}, in order
+     */
+    List<Map<String, Object>> getDevToolsCommands() {
+        return devToolsCommands;
+    }
+
+    long getScriptTimeout() {
+        return scriptTimeout;
+    }
+
+    /**
+     * @return every script timeout set through the endpoint, in order
+     */
+    List<Long> getScriptTimeouts() {
+        return scriptTimeouts;
+    }
+
+    List<String> getScripts() {
+        return scripts;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String path = exchange.getRequestURI().getPath();
+        Map<String, Object> body = Collections.emptyMap();
+        if ("POST".equals(method)) {
+            try (Reader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+                body = json.toType(reader, Json.MAP_TYPE);
+            }
+        }
+        Object value = null;
+        if ("POST".equals(method) && path.equals("/session")) {
+            Map<String, Object> session = new HashMap<>();
+            session.put("sessionId", "fake");
+            session.put("capabilities", Collections.singletonMap("browserName", "chrome"));
+            value = session;
+        } else if (path.endsWith("/timeouts")) {
+            if ("POST".equals(method) && body.get("script") instanceof Number) {
+                scriptTimeout = ((Number) body.get("script")).longValue();
+                scriptTimeouts.add(scriptTimeout);
+            }
+            Map<String, Object> timeouts = new HashMap<>();
+            timeouts.put("script", scriptTimeout);
+            timeouts.put("pageLoad", 300000L);
+            timeouts.put("implicit", 0L);
+            value = "GET".equals(method) ? timeouts : null;
+        } else if (path.endsWith("/goog/cdp/execute")) {
+            devToolsCommands.add(body);
+            value = devToolsResults.apply((String) body.get("cmd"));
+        } else if (path.endsWith("/screenshot")) {
+            value = Base64.getEncoder().encodeToString(SCREENSHOT);
+        } else if (path.endsWith("/url")) {
+            if ("POST".equals(method)) {
+                currentUrl = (String) body.get("url");
+            }
+            value = "GET".equals(method) ? currentUrl : null;
+        } else if (path.endsWith("/execute/sync") || path.endsWith("/execute/async")) {
+            String script = (String) body.get("script");
+            scripts.add(script);
+            value = scriptResults.apply(script);
+        }
+        byte[] response = json.toJson(Collections.singletonMap("value", value)).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, response.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response);
+        }
+    }
+}
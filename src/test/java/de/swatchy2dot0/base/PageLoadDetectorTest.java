@@ -0,0 +1,42 @@
+package de.swatchy2dot0.base;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.openqa.selenium.remote.RemoteWebDriver;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PageLoadDetectorTest {
+
+    private FakeChromeDriver chromeDriver;
+
+    private RemoteWebDriver driver;
+
+    @Before
+    public void setUp() throws Exception {
+        chromeDriver = new FakeChromeDriver(12345L);
+        chromeDriver.setScriptResults(script -> Arrays.asList("LOAD", false));
+        driver = chromeDriver.connect();
+    }
+
+    @After
+    public void tearDown() {
+        driver.quit();
+        chromeDriver.close();
+    }
+
+    @Test
+    public void restoresScriptTimeoutOfTheDriver() {
+        PageLoadResult result = new PageLoadDetector().await(driver);
+
+        assertEquals(PageLoadCondition.LOAD, result.getReached());
+        assertFalse(result.isTimedOut());
+        assertTrue(chromeDriver.getScriptTimeouts().get(0) > 20000L);
+        assertEquals(12345L, chromeDriver.getScriptTimeout());
+    }
+}
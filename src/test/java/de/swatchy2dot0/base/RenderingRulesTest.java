@@ -0,0 +1,37 @@
+package de.swatchy2dot0.base;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RenderingRulesTest {
+
+    private static final String SCRIPT_ONLY_PAGE = "<html><body><div id=\"root\"></div></body></html>";
+
+    @Test
+    public void learnsThatHostNeedsRendering() {
+        RenderingRules rules = new RenderingRules().setLearning(3, 0.5d, 0);
+        for (int i = 0; i < 3; i++) {
+            assertFalse(rules.isSufficient("https://spa.example/" + i, SCRIPT_ONLY_PAGE));
+        }
+        assertFalse(rules.shouldTryPlainFetch("https://spa.example/next"));
+    }
+
+    @Test
+    public void failedFetchesAreNotLearned() {
+        RenderingRules rules = new RenderingRules().setLearning(3, 0.5d, 0);
+        for (int i = 0; i < 10; i++) {
+            assertFalse(rules.isSufficient("https://flaky.example/" + i, null));
+        }
+        assertTrue(rules.shouldTryPlainFetch("https://flaky.example/next"));
+    }
+
+    @Test
+    public void neverRenderedHostNeedsResponse() {
+        RenderingRules rules = new RenderingRules().neverRender(".*\\.static\\.example");
+        assertTrue(rules.isNeverRendered("https://www.static.example/a"));
+        assertTrue(rules.isSufficient("https://www.static.example/a", SCRIPT_ONLY_PAGE));
+        assertFalse(rules.isSufficient("https://www.static.example/a", null));
+    }
+}
@@ -0,0 +1,81 @@
+package de.swatchy2dot0.base;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScreenshotWriterTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("screenshots").toFile();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Test
+    public void flushReturnsOnceEveryScreenshotIsOnDisk() throws Exception {
+        ScreenshotWriter writer = new ScreenshotWriter(2, 4);
+        List<File> targets = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            File target = new File(directory, "shot-" + i + ".png");
+            targets.add(target);
+            writer.write(target, new byte[64 * 1024]);
+        }
+
+        assertTrue(writer.flush(10L, TimeUnit.SECONDS));
+        for (File target : targets) {
+            assertTrue(target.getName(), target.isFile());
+        }
+        writer.shutdown();
+    }
+
+    @Test
+    public void writesAfterShutdownFail() throws Exception {
+        ScreenshotWriter writer = new ScreenshotWriter(1, 4);
+        writer.shutdown();
+
+        CompletableFuture<File> written = writer.write(new File(directory, "late.png"), new byte[]{1, 2, 3});
+
+        try {
+            written.join();
+            fail("a write after shutdown must fail");
+        } catch (CompletionException ex) {
+            assertTrue(ex.getCause() instanceof RejectedExecutionException);
+        }
+        assertTrue(writer.flush(1L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void defaultWriterIsRecreatedAfterShutdown() throws Exception {
+        ScreenshotWriter previous = ScreenshotWriter.getDefault();
+        previous.shutdown();
+
+        ScreenshotWriter current = ScreenshotWriter.getDefault();
+        File target = new File(directory, "default.png");
+        current.write(target, new byte[]{4, 5, 6}).join();
+
+        assertNotSame(previous, current);
+        assertArrayEquals(new byte[]{4, 5, 6}, Files.readAllBytes(target.toPath()));
+    }
+}
@@ -0,0 +1,105 @@
+package de.swatchy2dot0.base;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SerialExecutorTest {
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void runsTasksInSubmissionOrderAndRetiresOnceDrained() throws Exception {
+        CountDownLatch idle = new CountDownLatch(1);
+        SerialExecutor serial = new SerialExecutor(pool, drained -> idle.countDown());
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+
+        assertTrue(serial.execute(() -> await(release), ex -> {
+        }));
+        for (int i = 0; i < 10; i++) {
+            int task = i;
+            assertTrue(serial.execute(() -> order.add(task), ex -> {
+            }));
+        }
+        release.countDown();
+
+        assertTrue(idle.await(5, TimeUnit.SECONDS));
+        assertEquals(10, order.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i, (int) order.get(i));
+        }
+        assertFalse(serial.execute(() -> {
+        }, ex -> {
+        }));
+    }
+
+    @Test
+    public void rejectedTaskFailsAndTheQueueMovesOn() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Executor flaky = task -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new RejectedExecutionException("full");
+            }
+            pool.execute(task);
+        };
+        CountDownLatch idle = new CountDownLatch(1);
+        SerialExecutor serial = new SerialExecutor(flaky, drained -> idle.countDown());
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicBoolean secondRan = new AtomicBoolean();
+        AtomicBoolean thirdRan = new AtomicBoolean();
+
+        serial.execute(() -> await(release), ex -> rejected.incrementAndGet());
+        serial.execute(() -> secondRan.set(true), ex -> rejected.incrementAndGet());
+        serial.execute(() -> thirdRan.set(true), ex -> rejected.incrementAndGet());
+        release.countDown();
+
+        assertTrue(idle.await(5, TimeUnit.SECONDS));
+        assertEquals(1, rejected.get());
+        assertFalse(secondRan.get());
+        assertTrue(thirdRan.get());
+    }
+
+    @Test
+    public void retiresWhenItsOnlyTaskIsRejected() {
+        AtomicInteger retired = new AtomicInteger();
+        SerialExecutor serial = new SerialExecutor(task -> {
+            throw new RejectedExecutionException("shut down");
+        }, drained -> retired.incrementAndGet());
+        AtomicInteger rejected = new AtomicInteger();
+
+        assertTrue(serial.execute(() -> {
+        }, ex -> rejected.incrementAndGet()));
+
+        assertEquals(1, rejected.get());
+        assertEquals(1, retired.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package de.swatchy2dot0.base;
+
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+
+import java.lang.reflect.Proxy;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebDriver stand-ins for tests that must run without Chrome: every page is loaded, every other call returns null.
+ */
+final class StubDrivers {
+
+    private StubDrivers() {
+        super();
+    }
+
+    static WebDriver create() {
+        return create(ConcurrentHashMap.newKeySet());
+    }
+
+    /**
+     * @param quit receives the driver once {@link WebDriver#quit()} is called
+     */
+    static WebDriver create(Set<WebDriver> quit) {
+        WebDriver[] self = new WebDriver[1];
+        self[0] = (WebDriver) Proxy.newProxyInstance(StubDrivers.class.getClassLoader(),
+                new Class<?>[]{WebDriver.class, JavascriptExecutor.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "executeScript":
+                            return "complete";
+                        case "quit":
+                            quit.add(self[0]);
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "StubDriver@" + Integer.toHexString(System.identityHashCode(proxy));
+                        default:
+                            return null;
+                    }
+                });
+        return self[0];
+    }
+}
@@ -0,0 +1,104 @@
+package de.swatchy2dot0.benchmark;
+
+import de.swatchy2dot0.base.AffiliateElement;
+import de.swatchy2dot0.image.ImageHandle;
+import de.swatchy2dot0.image.ImageStripRenderer;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Strips per second of the {@link ImageStripRenderer} for products with four 1200x1200 JPEG images, single threaded
+ * and on all cores. Run with {@code main} from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Djava.awt.headless=true")
+public class ImageStripBenchmark {
+
+    private static final int ELEMENTS = 32;
+
+    private static final int IMAGES_PER_ELEMENT = 4;
+
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private Path directory;
+
+    private List<AffiliateElement> elements;
+
+    private ImageStripRenderer renderer;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("strip-benchmark");
+        Random random = new Random(42);
+        List<ImageHandle> images = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Path file = directory.resolve("image" + i + ".jpg");
+            ImageIO.write(productImage(random), "jpg", file.toFile());
+            images.add(ImageHandle.of(file));
+        }
+        elements = new ArrayList<>();
+        for (int i = 0; i < ELEMENTS; i++) {
+            AffiliateElement element = new AffiliateElement("https://shop.example.com/product/" + i);
+            List<ImageHandle> handles = new ArrayList<>();
+            for (int j = 0; j < IMAGES_PER_ELEMENT; j++) {
+                handles.add(images.get(random.nextInt(images.size())));
+            }
+            element.setImageHandles(handles);
+            elements.add(element);
+        }
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        renderer = new ImageStripRenderer(directory.resolve("out"), threads);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        renderer.close();
+        FileUtils.deleteDirectory(directory.toFile());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ELEMENTS)
+    public int renderStrips() {
+        return renderer.renderAll(elements);
+    }
+
+    private static BufferedImage productImage(Random random) {
+        BufferedImage image = new BufferedImage(1200, 1200, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 1200, 1200);
+        for (int i = 0; i < 200; i++) {
+            graphics.setColor(new Color(random.nextInt(0xffffff)));
+            graphics.fillOval(random.nextInt(1100), random.nextInt(1100), 20 + random.nextInt(200), 20 + random.nextInt(200));
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ImageStripBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,98 @@
+package de.swatchy2dot0.benchmark;
+
+import de.swatchy2dot0.base.AbstractCrawler;
+import de.swatchy2dot0.crawl.LinkExtractor;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the regex based {@link AbstractCrawler#extractUrls(String)} with the streaming {@link LinkExtractor} on a
+ * synthetic product listing page. Run with {@code main} from the test classpath, add {@code -prof gc} to the options to
+ * compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LinkExtractionBenchmark {
+
+    private static final String PAGE_URL = "https://shop.example.com/category/shoes?page=1";
+
+    @Param({"1000"})
+    public int links;
+
+    private String html;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder page = new StringBuilder("<!DOCTYPE html><html><head><title>Shoes</title>"
+                + "<link rel=\"stylesheet\" href=\"/static/app.css\"><script src=\"https://cdn.example.com/app.js\"></script>"
+                + "</head><body>");
+        for (int i = 0; i < links; i++) {
+            page.append("<div class=\"product\" data-id=\"").append(i).append("\">");
+            if (random.nextBoolean()) {
+                page.append("<a href=\"/product/").append(i).append("?ref=list&amp;pos=").append(i).append("\">");
+            } else {
+                page.append("<a href=\"https://shop.example.com/product/").append(i).append("\">");
+            }
+            page.append("<img src=\"images/").append(i).append(".jpg\" alt=\"Product ").append(i).append("\"></a>");
+            page.append("<p>Great shoe number ").append(i).append(", now ").append(random.nextInt(100)).append("% off!</p></div>\n");
+        }
+        html = page.append("</body></html>").toString();
+    }
+
+    /**
+     * the implementation before the pattern was cached: compiled on every call
+     */
+    @Benchmark
+    public void regexCompiledPerCall(Blackhole blackhole) {
+        Pattern pattern = Pattern.compile("((https?|ftp|gopher|telnet|file):((//)|(\\\\))+[\\w\\d:#@%/;$()~_?\\+-=\\\\\\.&]*)",
+                Pattern.CASE_INSENSITIVE);
+        Matcher matcher = pattern.matcher(html);
+        while (matcher.find()) {
+            blackhole.consume(html.substring(matcher.start(0), matcher.end(0)));
+        }
+    }
+
+    @Benchmark
+    public List<String> regexExtractUrls() {
+        return AbstractCrawler.extractUrls(html);
+    }
+
+    @Benchmark
+    public void linkExtractor(Blackhole blackhole) {
+        LinkExtractor.extract(html, PAGE_URL, blackhole::consume);
+    }
+
+    @Benchmark
+    public void linkExtractorChunked(Blackhole blackhole) {
+        LinkExtractor extractor = new LinkExtractor(PAGE_URL, blackhole::consume);
+        CharBuffer page = CharBuffer.wrap(html);
+        for (int start = 0; start < html.length(); start += 8192) {
+            page.limit(Math.min(html.length(), start + 8192));
+            page.position(start);
+            extractor.feed(page);
+        }
+        extractor.finish();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(LinkExtractionBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
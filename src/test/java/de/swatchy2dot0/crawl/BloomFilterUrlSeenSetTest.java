@@ -0,0 +1,47 @@
+package de.swatchy2dot0.crawl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BloomFilterUrlSeenSetTest {
+
+    @Test
+    public void staysBelowTheConfiguredFalsePositiveRate() {
+        int urls = 100_000;
+        double target = 0.01d;
+        BloomFilterUrlSeenSet seen = new BloomFilterUrlSeenSet(urls, target);
+        for (int i = 0; i < urls; i++) {
+            seen.add(url(i));
+        }
+        for (int i = 0; i < urls; i++) {
+            assertTrue(seen.contains(url(i)));
+            assertFalse(seen.add(url(i)));
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = urls; i < urls + probes; i++) {
+            if (seen.contains(url(i))) {
+                falsePositives++;
+            }
+        }
+        double rate = falsePositives / (double) probes;
+        assertTrue("false positive rate " + rate, rate < target);
+    }
+
+    @Test
+    public void expectedRateAtCapacityMeetsTheTarget() {
+        for (double target : new double[]{0.1d, 0.05d, 0.01d, 0.001d}) {
+            BloomFilterUrlSeenSet seen = new BloomFilterUrlSeenSet(100_000, target);
+            int k = seen.getHashFunctions();
+            double expected = Math.pow(1d - Math.exp(-k * 100_000d / seen.getBitCount()), k);
+            assertTrue(target + ": " + expected, expected <= target);
+        }
+    }
+
+    private static String url(int i) {
+        return "https://shop.example/product/" + i + "?color=" + (i % 7);
+    }
+}
@@ -0,0 +1,60 @@
+package de.swatchy2dot0.crawl;
+
+import de.swatchy2dot0.base.ChromeDriverPool;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CrawlSchedulerTest {
+
+    private final ChromeDriverPool driverPool = new ChromeDriverPool(0, 2);
+
+    @After
+    public void tearDown() {
+        driverPool.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMoreWorkersThanDrivers() {
+        new CrawlScheduler(driverPool, 3, (request, scheduler) -> {
+        });
+    }
+
+    @Test
+    public void processesAllRequests() throws Exception {
+        CrawlScheduler scheduler = new CrawlScheduler(driverPool, 2, (request, self) -> Thread.sleep(1L));
+        scheduler.start();
+        for (int i = 0; i < 50; i++) {
+            scheduler.submit("http://host" + (i % 3) + ".example/" + i);
+        }
+
+        assertTrue(scheduler.awaitIdle(10L, TimeUnit.SECONDS));
+        assertEquals(50L, scheduler.getCompletedCount());
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void droppedRequestsDoNotKeepSchedulerBusy() throws Exception {
+        CountDownLatch handling = new CountDownLatch(1);
+        CrawlScheduler scheduler = new CrawlScheduler(driverPool, 1, (request, self) -> {
+            handling.countDown();
+            Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+        });
+        scheduler.start();
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit("http://example.com/" + i);
+        }
+        assertTrue(handling.await(5L, TimeUnit.SECONDS));
+
+        scheduler.shutdown();
+
+        assertTrue(scheduler.awaitIdle(1L, TimeUnit.SECONDS));
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(1L, scheduler.getFailedCount());
+    }
+}
@@ -0,0 +1,33 @@
+package de.swatchy2dot0.crawl;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LinkExtractorTest {
+
+    @Test
+    public void resolvesRelativeLinks() {
+        assertEquals("http://h.com/a/c.html", resolve("http://h.com/a/b.html", "c.html"));
+        assertEquals("http://h.com/c.html", resolve("http://h.com/a/b.html", "/c.html"));
+        assertEquals("https://cdn.h.com/x.js", resolve("https://h.com/a/", "//cdn.h.com/x.js"));
+        assertEquals("http://h.com/c.html", resolve("http://h.com/a/b.html", "../c.html"));
+        assertEquals("http://h.com/a/b%20c.html", resolve("http://h.com/a/", "b c.html"));
+    }
+
+    @Test
+    public void queryOnlyLinkKeepsEncodedPath() {
+        assertEquals("http://h.com/a%20b/list?page=2", resolve("http://h.com/a%20b/list?page=1", "?page=2"));
+        assertEquals("http://h.com/list?q=a%20b", resolve("http://h.com/list", "?q=a b"));
+    }
+
+    private static String resolve(String pageUrl, String href) {
+        List<String> links = new ArrayList<>();
+        LinkExtractor.extract("<a href=\"" + href + "\">x</a>", pageUrl, links::add);
+        assertEquals(1, links.size());
+        return links.get(0);
+    }
+}
@@ -0,0 +1,34 @@
+package de.swatchy2dot0.crawl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OffHeapUrlSeenSetTest {
+
+    @Test
+    public void keepsEveryUrlWhileGrowingFromTheSmallestTables() {
+        // 16 slots per segment at the start, so every segment grows several times
+        OffHeapUrlSeenSet seen = new OffHeapUrlSeenSet(1);
+        int urls = 200_000;
+        for (int i = 0; i < urls; i++) {
+            assertTrue(seen.add(url(i)));
+        }
+
+        assertEquals(urls, seen.size());
+        for (int i = 0; i < urls; i++) {
+            assertTrue(seen.contains(url(i)));
+            assertFalse(seen.add(url(i)));
+        }
+        for (int i = urls; i < urls + 20_000; i++) {
+            assertFalse(seen.contains(url(i)));
+        }
+        assertEquals(urls, seen.size());
+    }
+
+    private static String url(int i) {
+        return "https://shop.example/product/" + i + "?color=" + (i % 7);
+    }
+}
@@ -0,0 +1,50 @@
+package de.swatchy2dot0.crawl;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UrlCanonicalizerTest {
+
+    @Test
+    public void lowercasesSchemeAndHost() {
+        assertEquals("http://shop.example.com/Cart", UrlCanonicalizer.canonicalize("HTTP://Shop.Example.COM/Cart"));
+    }
+
+    @Test
+    public void dropsDefaultPortsOnly() {
+        assertEquals("http://shop.example/a", UrlCanonicalizer.canonicalize("http://shop.example:80/a"));
+        assertEquals("https://shop.example/a", UrlCanonicalizer.canonicalize("https://shop.example:443/a"));
+        assertEquals("https://shop.example:80/a", UrlCanonicalizer.canonicalize("https://shop.example:80/a"));
+        assertEquals("http://shop.example:8080/a", UrlCanonicalizer.canonicalize("http://shop.example:8080/a"));
+    }
+
+    @Test
+    public void dropsFragments() {
+        assertEquals("http://shop.example/a?b=1", UrlCanonicalizer.canonicalize("http://shop.example/a?b=1#top"));
+    }
+
+    @Test
+    public void removesDotSegments() {
+        assertEquals("http://shop.example/a/c", UrlCanonicalizer.canonicalize("http://shop.example/a/./b/../c"));
+    }
+
+    @Test
+    public void turnsAnEmptyPathIntoSlash() {
+        assertEquals("http://shop.example/", UrlCanonicalizer.canonicalize("http://shop.example"));
+        assertEquals("http://shop.example/?a=1", UrlCanonicalizer.canonicalize("http://shop.example?a=1"));
+    }
+
+    @Test
+    public void sortsQueryParametersAndSkipsEmptyOnes() {
+        assertEquals("http://shop.example/p?a=1&b=2&c", UrlCanonicalizer.canonicalize("http://shop.example/p?c&b=2&&a=1&"));
+        assertEquals("http://shop.example/p", UrlCanonicalizer.canonicalize("http://shop.example/p?"));
+        assertEquals("http://shop.example/p", UrlCanonicalizer.canonicalize("http://shop.example/p?&&"));
+    }
+
+    @Test
+    public void keepsInvalidAndRelativeUrlsTrimmed() {
+        assertEquals("not a url", UrlCanonicalizer.canonicalize("  not a url "));
+        assertEquals("/a/../b", UrlCanonicalizer.canonicalize("/a/../b"));
+    }
+}
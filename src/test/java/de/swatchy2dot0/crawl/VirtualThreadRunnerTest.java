@@ -0,0 +1,25 @@
+package de.swatchy2dot0.crawl;
+
+import de.swatchy2dot0.base.ChromeDriverPool;
+import org.junit.After;
+import org.junit.Test;
+
+public class VirtualThreadRunnerTest {
+
+    private final ChromeDriverPool driverPool = new ChromeDriverPool(0, 2);
+
+    @After
+    public void tearDown() {
+        driverPool.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMoreDriverSlotsThanDrivers() {
+        new VirtualThreadRunner(driverPool, 3, "crawl");
+    }
+
+    @Test
+    public void acceptsOneSlotPerDriver() {
+        new VirtualThreadRunner(driverPool, 2, "crawl").close();
+    }
+}
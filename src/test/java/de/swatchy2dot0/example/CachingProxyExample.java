@@ -0,0 +1,80 @@
+package de.swatchy2dot0.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import de.swatchy2dot0.proxy.AssetCache;
+import de.swatchy2dot0.proxy.CachingProxy;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the {@link CachingProxy} against a local origin server, the way ten Chrome instances would request the same
+ * assets: the bundle and the logo reach the origin once, the page that must not be cached every time.
+ */
+public class CachingProxyExample {
+
+    private final static Logger logger = LoggerFactory.getLogger(CachingProxyExample.class);
+
+    public static void main(String[] args) throws Exception {
+
+        AtomicInteger originRequests = new AtomicInteger();
+        HttpServer origin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        origin.createContext("/app.js", exchange -> respond(exchange, originRequests, "max-age=3600", 200 * 1024));
+        origin.createContext("/logo.png", exchange -> respond(exchange, originRequests, null, 20 * 1024));
+        origin.createContext("/page", exchange -> respond(exchange, originRequests, "no-cache", 10 * 1024));
+        origin.start();
+
+        Path cacheDirectory = Files.createTempDirectory("asset-cache");
+        try (CachingProxy proxy = new CachingProxy(new AssetCache(cacheDirectory, 64L * 1024L * 1024L)).start()) {
+            Proxy httpProxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress("127.0.0.1", proxy.getPort()));
+            String base = "http://127.0.0.1:" + origin.getAddress().getPort();
+
+            long startMillis = System.currentTimeMillis();
+            for (int driver = 0; driver < 10; driver++) {
+                for (String path : new String[]{"/page", "/app.js", "/logo.png"}) {
+                    HttpURLConnection conn = (HttpURLConnection) new URL(base + path).openConnection(httpProxy);
+                    try (InputStream in = conn.getInputStream()) {
+                        IOUtils.toByteArray(in);
+                    }
+                }
+            }
+            logger.info("30 requests in {} ms, {} reached the origin", System.currentTimeMillis() - startMillis,
+                    originRequests.get());
+            logger.info("{}", proxy.getStatistics());
+            logger.info("cache holds {} entries, {} bytes", proxy.getCache().getEntryCount(), proxy.getCache().getSizeBytes());
+        } finally {
+            origin.stop(0);
+            FileUtils.deleteDirectory(cacheDirectory.toFile());
+        }
+    }
+
+    private static void respond(HttpExchange exchange, AtomicInteger originRequests, String cacheControl, int size) throws IOException {
+        originRequests.incrementAndGet();
+        byte[] body = new byte[size];
+        byte[] text = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < body.length; i++) {
+            body[i] = text[i % text.length];
+        }
+        if (cacheControl != null) {
+            exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
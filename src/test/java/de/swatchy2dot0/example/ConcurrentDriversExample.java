@@ -0,0 +1,66 @@
+package de.swatchy2dot0.example;
+
+import de.swatchy2dot0.base.ChromeDriverPool;
+import de.swatchy2dot0.base.RuntimeContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Starts one driver per thread at the same time. With independent driver contexts the total time is close to a
+ * single Chrome startup instead of the sum of all startups, and repeated lookups return immediately.
+ * <p>
+ * The optional second argument shares one Chrome between that many drivers, each in a browser context of its own.
+ */
+public class ConcurrentDriversExample {
+
+    private final static Logger logger = LoggerFactory.getLogger(ConcurrentDriversExample.class);
+
+    public static void main(String[] args) throws Exception {
+
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+
+        ChromeDriverPool driverPool = new ChromeDriverPool(0, threads);
+        if (args.length > 1) {
+            driverPool.setBrowserContextsPerChrome(Integer.parseInt(args[1]));
+        }
+
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String driverContext = "CONCURRENT-" + i;
+            Thread worker = new Thread(() -> {
+                RuntimeContext.getCurrent().pushDriverContext(driverContext);
+                try {
+                    start.await();
+                    long startMillis = System.currentTimeMillis();
+                    driverPool.driver();
+                    long createdMillis = System.currentTimeMillis();
+                    for (int j = 0; j < 1000; j++) {
+                        driverPool.driver();
+                    }
+                    logger.info("{}: driver after {} ms, 1000 cached lookups in {} ms", driverContext,
+                            createdMillis - startMillis, System.currentTimeMillis() - createdMillis);
+                } catch (Exception ex) {
+                    logger.error(driverContext + " failed", ex);
+                }
+            }, driverContext);
+            workers.add(worker);
+            worker.start();
+        }
+
+        long startMillis = System.currentTimeMillis();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        logger.info("{} drivers ready after {} ms", threads, System.currentTimeMillis() - startMillis);
+
+        driverPool.shutdown();
+
+        System.exit(0);
+    }
+}
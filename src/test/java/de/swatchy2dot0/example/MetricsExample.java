@@ -0,0 +1,53 @@
+package de.swatchy2dot0.example;
+
+import de.swatchy2dot0.metrics.CrawlerMetrics;
+import de.swatchy2dot0.metrics.CrawlerMetricsMXBean;
+import de.swatchy2dot0.metrics.MetricsRegistry;
+import de.swatchy2dot0.metrics.PrometheusEndpoint;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records made-up latencies the way the crawler does, then reads them back through JMX and the Prometheus endpoint.
+ */
+public class MetricsExample {
+
+    private final static Logger logger = LoggerFactory.getLogger(MetricsExample.class);
+
+    public static void main(String[] args) throws Exception {
+
+        MetricsRegistry metrics = MetricsRegistry.getDefault();
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            String driverContext = "worker-" + (i % 4);
+            String host = i % 3 == 0 ? "shop.example.com" : "www.example.org";
+            metrics.recordLatency(MetricsRegistry.NAVIGATION, driverContext, host, TimeUnit.MILLISECONDS.toNanos(300 + random.nextInt(2000)));
+            metrics.recordLatency(MetricsRegistry.ELEMENT_LOOKUP, driverContext, host, TimeUnit.MILLISECONDS.toNanos(random.nextInt(80)));
+            if (i % 50 == 0) {
+                metrics.increment("navigation_error", driverContext, host);
+            }
+        }
+        metrics.recordLatency(MetricsRegistry.DRIVER_CREATION, "", "", TimeUnit.MILLISECONDS.toNanos(1800));
+
+        CrawlerMetrics.register();
+        CrawlerMetricsMXBean mxBean = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(),
+                new ObjectName(CrawlerMetrics.OBJECT_NAME), CrawlerMetricsMXBean.class);
+        mxBean.getP99Millis().forEach((series, millis) -> logger.info("JMX p99 {} ms: {}", millis, series));
+
+        try (PrometheusEndpoint endpoint = new PrometheusEndpoint(metrics, 0).start();
+             InputStream in = new URL("http://127.0.0.1:" + endpoint.getPort() + "/metrics").openStream()) {
+            String text = IOUtils.toString(in, StandardCharsets.UTF_8);
+            logger.info("scraped {} lines, e.g.\n{}", text.split("\n").length, text.substring(0, Math.min(1500, text.length())));
+        }
+    }
+}
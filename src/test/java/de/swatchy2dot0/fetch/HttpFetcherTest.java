@@ -0,0 +1,152 @@
+package de.swatchy2dot0.fetch;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class HttpFetcherTest {
+
+    private static final int LIMIT = 100 * 1024;
+
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private final HttpFetcher fetcher = new HttpFetcher();
+
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/exact", exchange -> respond(exchange, 200, body(LIMIT), null));
+        server.createContext("/over", exchange -> respond(exchange, 200, body(LIMIT + 1), null));
+        server.createContext("/missing", exchange -> respond(exchange, 404, "not here".getBytes(StandardCharsets.UTF_8), null));
+        server.createContext("/broken", exchange -> respond(exchange, 500, body(8192), null));
+        server.createContext("/gzip", exchange -> respond(exchange, 200, gzip("<p>Gr\u00fc\u00dfe</p>"), "gzip"));
+        server.createContext("/redirect", exchange -> {
+            exchange.getResponseHeaders().set("Location", "/gzip");
+            // a response without body makes the JDK server close the connection
+            respond(exchange, 302, "moved".getBytes(StandardCharsets.UTF_8), null);
+        });
+        server.start();
+        fetcher.setMaxBodyBytes(LIMIT);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void bodyOfExactlyTheLimitIsAccepted() throws IOException {
+        FetchResponse response = fetcher.fetch(url("/exact"));
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(body(LIMIT), response.getBody());
+    }
+
+    @Test
+    public void bodyOverTheLimitFails() {
+        try {
+            fetcher.fetch(url("/over"));
+            fail("body over the limit must fail");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("exceeds " + LIMIT + " bytes"));
+        }
+    }
+
+    @Test
+    public void limitBelowBufferSizeIsEnforced() throws IOException {
+        fetcher.setMaxBodyBytes(1000);
+        try {
+            fetcher.fetch(url("/broken"));
+            fail("body over the limit must fail");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("exceeds 1000 bytes"));
+        }
+    }
+
+    @Test
+    public void errorStatusReturnsBody() throws IOException {
+        FetchResponse missing = fetcher.fetch(url("/missing"));
+        assertEquals(404, missing.getStatus());
+        assertEquals("not here", missing.getText());
+
+        FetchResponse broken = fetcher.fetch(url("/broken"));
+        assertEquals(500, broken.getStatus());
+        assertEquals(8192, broken.getBody().length);
+    }
+
+    @Test
+    public void followsRedirectAndDecodesGzip() throws IOException {
+        FetchResponse response = fetcher.fetch(url("/redirect"));
+        assertEquals(200, response.getStatus());
+        assertTrue(response.getUrl().endsWith("/gzip"));
+        assertEquals("<p>Gr\u00fc\u00dfe</p>", response.getText());
+    }
+
+    @Test
+    public void reusesConnectionAcrossResponses() throws IOException {
+        for (String path : Arrays.asList("/exact", "/missing", "/broken", "/redirect", "/gzip", "/exact")) {
+            fetcher.fetch(url(path));
+        }
+        assertEquals(Collections.singleton(clientPorts.iterator().next()), clientPorts);
+    }
+
+    @Test
+    public void downloadStreamsBody() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FetchResponse response = fetcher.download(url("/exact"), Collections.emptyMap(), 10000L, out);
+        assertEquals(200, response.getStatus());
+        assertArrayEquals(body(LIMIT), out.toByteArray());
+    }
+
+    private String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body, String contentEncoding) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+        if (contentEncoding != null) {
+            exchange.getResponseHeaders().set("Content-Encoding", contentEncoding);
+        }
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] body(int length) {
+        byte[] body = new byte[length];
+        for (int i = 0; i < length; i++) {
+            body[i] = (byte) ('a' + i % 26);
+        }
+        return body;
+    }
+
+    private static byte[] gzip(String text) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+        return bytes.toByteArray();
+    }
+}
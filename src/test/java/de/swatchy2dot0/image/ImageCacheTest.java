@@ -0,0 +1,79 @@
+package de.swatchy2dot0.image;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+public class ImageCacheTest {
+
+    private static final byte[] IMAGE = {(byte) 0x89, 'P', 'N', 'G', 13, 10, 26, 10, 1, 2, 3, 4};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HttpServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            int status = exchange.getRequestURI().getPath().startsWith("/missing") ? 404 : 200;
+            byte[] body = status == 200 ? IMAGE : new byte[]{'x'};
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void storesEqualImagesOnceAndKeepsIndexAfterClose() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        List<String> urls = Arrays.asList(url("/a.png"), url("/missing.png"), url("/b.png"));
+
+        try (ImageCache cache = new ImageCache(directory); ImagePipeline pipeline = new ImagePipeline(cache, 2)) {
+            List<CachedImage> images = pipeline.fetchAll(urls).get(10L, TimeUnit.SECONDS);
+            assertEquals(2, images.size());
+            assertEquals(images.get(0).getFile(), images.get(1).getFile());
+            assertEquals(IMAGE.length, images.get(0).getSize());
+        }
+
+        try (ImageCache reopened = new ImageCache(directory)) {
+            assertEquals(2, reopened.getUrlCount());
+            assertNotNull(reopened.get(url("/b.png")));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void closedCacheRejectsStores() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        ImageCache cache = new ImageCache(directory);
+        cache.close();
+        cache.store(url("/a.png"), folder.newFile().toPath(), ImagePipeline.hex(new byte[32]), 0L, null, null);
+    }
+
+    private String url(String path) {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + path;
+    }
+}
@@ -0,0 +1,109 @@
+package de.swatchy2dot0.proxy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+
+public class CachingProxyTest {
+
+    private final AtomicInteger assetRequests = new AtomicInteger();
+
+    private final AtomicInteger pageRequests = new AtomicInteger();
+
+    private HttpServer origin;
+
+    private Path cacheDirectory;
+
+    private CachingProxy proxy;
+
+    @Before
+    public void setUp() throws IOException {
+        origin = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        origin.createContext("/app.js", exchange -> respond(exchange, assetRequests, "max-age=3600", "var app;"));
+        origin.createContext("/page", exchange -> respond(exchange, pageRequests, "no-store", "<html></html>"));
+        origin.start();
+        cacheDirectory = Files.createTempDirectory("asset-cache");
+        proxy = new CachingProxy(new AssetCache(cacheDirectory, 1024L * 1024L)).start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        proxy.close();
+        origin.stop(0);
+        FileUtils.deleteDirectory(cacheDirectory.toFile());
+    }
+
+    @Test
+    public void answersTheSecondRequestOfAnAssetFromTheCache() throws Exception {
+        assertEquals("var app;", get("/app.js"));
+        assertEquals(1, proxy.getStatistics().getMisses());
+        awaitStored(1);
+
+        assertEquals("var app;", get("/app.js"));
+        assertEquals(1, assetRequests.get());
+        assertEquals(1, proxy.getStatistics().getHits());
+        assertEquals(1, proxy.getStatistics().getMisses());
+    }
+
+    @Test
+    public void passesNoStoreResponsesThrough() throws Exception {
+        assertEquals("<html></html>", get("/page"));
+        assertEquals("<html></html>", get("/page"));
+
+        assertEquals(2, pageRequests.get());
+        assertEquals(0, proxy.getStatistics().getHits());
+        assertEquals(0, proxy.getStatistics().getStored());
+        assertEquals(0, proxy.getCache().getEntryCount());
+    }
+
+    private String get(String path) throws IOException {
+        Proxy httpProxy = new Proxy(Proxy.Type.HTTP, new InetSocketAddress(InetAddress.getLoopbackAddress(), proxy.getPort()));
+        URL url = new URL("http://127.0.0.1:" + origin.getAddress().getPort() + path);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection(httpProxy);
+        try (InputStream in = conn.getInputStream()) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * The proxy stores a response after it has been sent to the client.
+     */
+    private void awaitStored(long stored) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (proxy.getStatistics().getStored() < stored && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(stored, proxy.getStatistics().getStored());
+    }
+
+    private static void respond(HttpExchange exchange, AtomicInteger requests, String cacheControl, String text)
+            throws IOException {
+        requests.incrementAndGet();
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain");
+        exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}